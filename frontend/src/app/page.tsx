@@ -35,7 +35,7 @@ export default function Home() {
         fetch('/api/products'),
         fetch('/api/categories'),
       ]);
-      if (prodRes.ok) setProducts(await prodRes.json());
+      if (prodRes.ok) setProducts((await prodRes.json()).items);
       if (catRes.ok) setCategories(await catRes.json());
     } catch {
       // backend may not be running — show empty state
@@ -0,0 +1,12 @@
+package com.omnistore.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Caffeine settings live in application.properties (spring.cache.caffeine.spec)
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+}
@@ -1,13 +1,11 @@
 package com.omnistore.controller;
 
 import com.omnistore.entity.Address;
-import com.omnistore.entity.User;
+import com.omnistore.security.CurrentUser;
 import com.omnistore.services.AddressService;
-import com.omnistore.services.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -15,23 +13,19 @@ import java.util.List;
 public class AddressController {
 
     private final AddressService addressService;
-    private final UserService userService;
 
-    public AddressController(AddressService addressService, UserService userService) {
+    public AddressController(AddressService addressService) {
         this.addressService = addressService;
-        this.userService = userService;
     }
 
     @PostMapping
-    public ResponseEntity<Address> addAddress(Principal principal, @RequestBody Address address) {
-        User user = userService.findUserByEmail(principal.getName());
-        address.setUserId(user.getId());
+    public ResponseEntity<Address> addAddress(@CurrentUser Long userId, @RequestBody Address address) {
+        address.setUserId(userId);
         return ResponseEntity.ok(addressService.addAddress(address));
     }
 
     @GetMapping
-    public ResponseEntity<List<Address>> getAddresses(Principal principal) {
-        User user = userService.findUserByEmail(principal.getName());
-        return ResponseEntity.ok(addressService.getAddressesByUserId(user.getId()));
+    public ResponseEntity<List<Address>> getAddresses(@CurrentUser Long userId) {
+        return ResponseEntity.ok(addressService.getAddressesByUserId(userId));
     }
 }
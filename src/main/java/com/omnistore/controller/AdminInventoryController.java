@@ -23,4 +23,13 @@ public class AdminInventoryController {
     ) {
         return inventoryService.updateStock(productId, dto.getStock());
     }
+
+    // switch a flash-sale SKU to in-memory stock (or back)
+    @PutMapping("/product/{productId}/hot")
+    public Product setHotMode(
+            @PathVariable Long productId,
+            @RequestParam boolean enabled
+    ) {
+        return inventoryService.setHotMode(productId, enabled);
+    }
 }
@@ -2,43 +2,42 @@ package com.omnistore.controller;
 
 import com.omnistore.dto.AddToCartRequestDto;
 import com.omnistore.dto.CartResponseDto;
-import com.omnistore.entity.User;
+import com.omnistore.dto.CartUpdateRequestDto;
+import com.omnistore.security.CurrentUser;
 import com.omnistore.services.CartService;
-import com.omnistore.services.UserService;
+import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
-
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
 
     private final CartService cartService;
-    private final UserService userService;
 
-    public CartController(CartService cartService, UserService userService) {
+    public CartController(CartService cartService) {
         this.cartService = cartService;
-        this.userService = userService;
     }
 
     @PostMapping("/add")
-    public ResponseEntity<CartResponseDto> addToCart(Principal principal, @RequestBody AddToCartRequestDto dto) {
-        User user = userService.findUserByEmail(principal.getName());
-        cartService.addToCart(user.getId(), dto);
-        return ResponseEntity.ok(cartService.getCartByUserId(user.getId()));
+    public ResponseEntity<CartResponseDto> addToCart(@CurrentUser Long userId, @RequestBody AddToCartRequestDto dto) {
+        return ResponseEntity.ok(cartService.addToCart(userId, dto));
+    }
+
+    // apply many add / remove / set-quantity operations in one request
+    @PatchMapping
+    public ResponseEntity<CartResponseDto> updateCart(@CurrentUser Long userId, @Valid @RequestBody CartUpdateRequestDto dto) {
+        return ResponseEntity.ok(cartService.updateCart(userId, dto));
     }
 
     @GetMapping
-    public ResponseEntity<CartResponseDto> getCart(Principal principal) {
-        User user = userService.findUserByEmail(principal.getName());
-        return ResponseEntity.ok(cartService.getCartByUserId(user.getId()));
+    public ResponseEntity<CartResponseDto> getCart(@CurrentUser Long userId) {
+        return ResponseEntity.ok(cartService.getCartByUserId(userId));
     }
 
     @DeleteMapping("/remove/{productId}")
-    public ResponseEntity<Void> removeFromCart(Principal principal, @PathVariable Long productId) {
-        User user = userService.findUserByEmail(principal.getName());
-        cartService.removeFromCart(user.getId(), productId);
+    public ResponseEntity<Void> removeFromCart(@CurrentUser Long userId, @PathVariable Long productId) {
+        cartService.removeFromCart(userId, productId);
         return ResponseEntity.noContent().build();
     }
 }
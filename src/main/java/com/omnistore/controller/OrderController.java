@@ -1,39 +1,37 @@
 package com.omnistore.controller;
 
+import com.omnistore.dto.CursorPageDto;
 import com.omnistore.dto.OrderResponseDto;
 import com.omnistore.dto.PlaceOrderRequestDto;
 import com.omnistore.entity.Order;
-import com.omnistore.entity.User;
+import com.omnistore.security.CurrentUser;
 import com.omnistore.services.OrderService;
-import com.omnistore.services.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
 
     private final OrderService orderService;
-    private final UserService userService;
 
-    public OrderController(OrderService orderService, UserService userService) {
+    public OrderController(OrderService orderService) {
         this.orderService = orderService;
-        this.userService = userService;
     }
 
     @PostMapping("/place")
-    public ResponseEntity<Order> placeOrder(Principal principal, @RequestBody PlaceOrderRequestDto dto) {
-        User user = userService.findUserByEmail(principal.getName());
-        return ResponseEntity.ok(orderService.placeOrder(user.getId(), dto));
+    public ResponseEntity<Order> placeOrder(@CurrentUser Long userId, @RequestBody PlaceOrderRequestDto dto) {
+        return ResponseEntity.ok(orderService.placeOrder(userId, dto));
     }
 
+    // newest first; pass nextCursor back as cursor for the next page, expand=items to include lines
     @GetMapping
-    public ResponseEntity<List<OrderResponseDto>> getOrders(Principal principal) {
-        User user = userService.findUserByEmail(principal.getName());
-        return ResponseEntity.ok(orderService.getOrdersByUserId(user.getId()));
+    public ResponseEntity<CursorPageDto<OrderResponseDto>> getOrders(@CurrentUser Long userId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "20") int size,
+                                                                     @RequestParam(required = false) String expand) {
+        boolean expandItems = "items".equals(expand);
+        return ResponseEntity.ok(orderService.getOrderHistory(userId, cursor, size, expandItems));
     }
 
     @PutMapping("/{orderId}/ship")
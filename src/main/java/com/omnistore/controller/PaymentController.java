@@ -1,11 +1,8 @@
 package com.omnistore.controller;
 
 import com.omnistore.entity.Payment;
-import com.omnistore.services.OrderService;
+import com.omnistore.payment.StripeWebhookReceiver;
 import com.omnistore.services.PaymentService;
-import com.stripe.exception.StripeException;
-import com.stripe.model.Event;
-import com.stripe.net.ApiResource;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StreamUtils;
@@ -19,56 +16,35 @@ import java.nio.charset.StandardCharsets;
 public class PaymentController {
 
     private final PaymentService paymentService;
-    private final OrderService orderService;
+    private final StripeWebhookReceiver webhookReceiver;
 
-    public PaymentController(PaymentService paymentService,
-                             OrderService orderService) {
+    public PaymentController(PaymentService paymentService, StripeWebhookReceiver webhookReceiver) {
         this.paymentService = paymentService;
-        this.orderService = orderService;
+        this.webhookReceiver = webhookReceiver;
     }
 
     @PostMapping("/pay/{orderId}")
     public ResponseEntity<Payment> pay(@PathVariable Long orderId) {
-        Payment payment = paymentService.pay(orderId);
-        orderService.updateStatusAfterPayment(orderId, "SUCCESS".equals(payment.getStatus()));
-        return ResponseEntity.ok(payment);
+        return ResponseEntity.ok(paymentService.pay(orderId));
     }
 
     @PostMapping("/stripe/create-payment-intent/{orderId}")
     public ResponseEntity<Payment> createStripePaymentIntent(@PathVariable Long orderId) {
-        try {
-            return ResponseEntity.ok(paymentService.createStripePaymentIntent(orderId));
-        } catch (StripeException e) {
-            return ResponseEntity.status(500).build();
-        }
+        return ResponseEntity.ok(paymentService.createStripePaymentIntent(orderId));
     }
 
     @PostMapping("/stripe/confirm/{paymentIntentId}")
     public ResponseEntity<Payment> confirmStripePayment(@PathVariable String paymentIntentId) {
-        try {
-            return ResponseEntity.ok(paymentService.confirmStripePayment(paymentIntentId));
-        } catch (StripeException e) {
-            return ResponseEntity.status(500).build();
-        }
+        return ResponseEntity.ok(paymentService.confirmStripePayment(paymentIntentId));
     }
 
+    // Verified and stored, then processed in the background; duplicates are acknowledged too
     @PostMapping("/stripe/webhook")
-    public ResponseEntity<String> handleStripeWebhook(HttpServletRequest request) throws IOException {
+    public ResponseEntity<String> handleStripeWebhook(HttpServletRequest request,
+                                                      @RequestHeader(value = "Stripe-Signature", required = false) String signature)
+            throws IOException {
         String payload = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
-
-        Event event;
-        try {
-            event = ApiResource.GSON.fromJson(payload, Event.class);
-        } catch (Exception e) {
-            return ResponseEntity.status(400).body("Invalid payload");
-        }
-
-        // Handle the event
-        if ("payment_intent.succeeded".equals(event.getType())) {
-            System.out.println("Payment succeeded: " + event.getId());
-            // You can add logic here to update the order status if needed
-        }
-
+        webhookReceiver.receive(payload, signature);
         return ResponseEntity.ok("Received");
     }
 }
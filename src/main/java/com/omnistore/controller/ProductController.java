@@ -1,10 +1,21 @@
 package com.omnistore.controller;
 
+import com.omnistore.dto.CursorPageDto;
+import com.omnistore.dto.ProductBrowseResponseDto;
 import com.omnistore.dto.ProductRequestDto;
 import com.omnistore.dto.ProductResponseDto;
+import com.omnistore.dto.ProductSearchResponseDto;
+import com.omnistore.dto.SuggestionDto;
+import com.omnistore.search.CatalogBrowseService;
+import com.omnistore.search.ProductSearchService;
+import com.omnistore.search.SuggestionService;
 import com.omnistore.services.ProductService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -13,9 +24,16 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final SuggestionService suggestionService;
+    private final CatalogBrowseService catalogBrowseService;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductSearchService productSearchService,
+                             SuggestionService suggestionService, CatalogBrowseService catalogBrowseService) {
         this.productService = productService;
+        this.productSearchService = productSearchService;
+        this.suggestionService = suggestionService;
+        this.catalogBrowseService = catalogBrowseService;
     }
 
     @PostMapping
@@ -24,7 +42,56 @@ public class ProductController {
     }
 
     @GetMapping
-    public List<ProductResponseDto> getProducts() {
-        return productService.getAllProducts();
+    public CursorPageDto<ProductResponseDto> getProducts(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "50") int size) {
+        return productService.getProducts(cursor, size);
+    }
+
+    // ranked free-text search; the last word also matches as a prefix, the filters are optional
+    @GetMapping("/search")
+    public ProductSearchResponseDto searchProducts(@RequestParam String q,
+                                                   @RequestParam(required = false) Long category,
+                                                   @RequestParam(required = false) Double minPrice,
+                                                   @RequestParam(required = false) Double maxPrice,
+                                                   @RequestParam(required = false) Boolean active,
+                                                   @RequestParam(defaultValue = "0") int offset,
+                                                   @RequestParam(defaultValue = "20") int size) {
+        return productSearchService.search(q, category, minPrice, maxPrice, active, offset, size);
+    }
+
+    // typeahead, one call per keystroke; answered from memory, most popular first
+    @GetMapping("/suggest")
+    public List<SuggestionDto> suggest(@RequestParam(defaultValue = "") String q,
+                                       @RequestParam(defaultValue = "10") int size) {
+        return suggestionService.suggest(q, size);
+    }
+
+    // products in every given category, with price, rating and in-stock counts;
+    // e.g. ?category=3&category=7&inStock=true&maxPrice=50
+    @GetMapping("/browse")
+    public ProductBrowseResponseDto browseProducts(@RequestParam(required = false) List<Long> category,
+                                                   @RequestParam(required = false) Double minPrice,
+                                                   @RequestParam(required = false) Double maxPrice,
+                                                   @RequestParam(required = false) Integer minRating,
+                                                   @RequestParam(defaultValue = "false") boolean inStock,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "20") int size) {
+        return catalogBrowseService.browse(category, minPrice, maxPrice, minRating, inStock, cursor, size);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        StreamingResponseBody body = out -> productService.exportCatalog(out, gzip);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 }
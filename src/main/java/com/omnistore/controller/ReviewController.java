@@ -1,44 +1,37 @@
 package com.omnistore.controller;
 
+import com.omnistore.dto.CursorPageDto;
 import com.omnistore.dto.ReviewRequestDto;
 import com.omnistore.dto.ReviewResponseDto;
 import com.omnistore.entity.ProductReview;
-import com.omnistore.entity.User;
+import com.omnistore.security.CurrentUser;
 import com.omnistore.services.ReviewService;
-import com.omnistore.services.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
-import java.util.List;
-import java.util.stream.Collectors;
-
 @RestController
 @RequestMapping("/api/reviews")
 public class ReviewController {
 
     private final ReviewService reviewService;
-    private final UserService userService;
 
-    public ReviewController(ReviewService reviewService, UserService userService) {
+    public ReviewController(ReviewService reviewService) {
         this.reviewService = reviewService;
-        this.userService = userService;
     }
 
     @PostMapping
-    public ResponseEntity<ReviewResponseDto> addReview(@RequestBody ReviewRequestDto request, Principal principal) {
-        User user = userService.findUserByEmail(principal.getName());
-        ProductReview review = reviewService.addReview(user.getId(), request.getProductId(), request.getRating(), request.getComment());
+    public ResponseEntity<ReviewResponseDto> addReview(@RequestBody ReviewRequestDto request, @CurrentUser Long userId) {
+        ProductReview review = reviewService.addReview(userId, request.getProductId(), request.getRating(), request.getComment());
         return ResponseEntity.ok(mapToDto(review));
     }
 
+    // sort=newest (default) or rating; pass nextCursor back as cursor for the next page
     @GetMapping("/product/{productId}")
-    public ResponseEntity<List<ReviewResponseDto>> getReviewsByProduct(@PathVariable Long productId) {
-        List<ProductReview> reviews = reviewService.getReviewsByProduct(productId);
-        List<ReviewResponseDto> responseDtos = reviews.stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(responseDtos);
+    public ResponseEntity<CursorPageDto<ReviewResponseDto>> getReviewsByProduct(@PathVariable Long productId,
+                                                                                @RequestParam(defaultValue = "newest") String sort,
+                                                                                @RequestParam(required = false) String cursor,
+                                                                                @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(reviewService.getReviewsByProduct(productId, sort, cursor, size));
     }
 
     private ReviewResponseDto mapToDto(ProductReview review) {
@@ -0,0 +1,30 @@
+package com.omnistore.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class CartOperationDto {
+
+    // ADD increments, SET overwrites (0 removes the line), REMOVE drops the line
+    public enum Op { ADD, REMOVE, SET }
+
+    @NotNull
+    private Op op;
+
+    @NotNull
+    private Long productId;
+
+    @Min(0)
+    private Integer quantity;
+
+    public CartOperationDto() {}
+
+    public Op getOp() { return op; }
+    public void setOp(Op op) { this.op = op; }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+}
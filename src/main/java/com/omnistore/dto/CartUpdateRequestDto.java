@@ -0,0 +1,19 @@
+package com.omnistore.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class CartUpdateRequestDto {
+
+    @NotEmpty
+    @Size(max = 500)
+    private List<@Valid CartOperationDto> operations;
+
+    public CartUpdateRequestDto() {}
+
+    public List<CartOperationDto> getOperations() { return operations; }
+    public void setOperations(List<CartOperationDto> operations) { this.operations = operations; }
+}
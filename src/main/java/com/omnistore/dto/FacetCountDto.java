@@ -0,0 +1,20 @@
+package com.omnistore.dto;
+
+public class FacetCountDto {
+
+    private String value;
+    private int count;
+
+    public FacetCountDto() {}
+
+    public FacetCountDto(String value, int count) {
+        this.value = value;
+        this.count = count;
+    }
+
+    public String getValue() { return value; }
+    public void setValue(String value) { this.value = value; }
+
+    public int getCount() { return count; }
+    public void setCount(int count) { this.count = count; }
+}
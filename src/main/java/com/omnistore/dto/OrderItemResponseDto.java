@@ -1,7 +1,13 @@
 package com.omnistore.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class OrderItemResponseDto {
 
+    // used to group items under their order, already implied by the nesting in JSON
+    @JsonIgnore
+    private Long orderId;
+
     private Long productId;
     private String productName;
     private Integer quantity;
@@ -9,6 +15,18 @@ public class OrderItemResponseDto {
 
     public OrderItemResponseDto() {}
 
+    // used by the JPQL constructor projection in OrderItemRepository
+    public OrderItemResponseDto(Long orderId, Long productId, String productName, Integer quantity, Double price) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+
     public Long getProductId() { return productId; }
     public void setProductId(Long productId) { this.productId = productId; }
 
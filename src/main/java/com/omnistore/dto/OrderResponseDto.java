@@ -1,6 +1,10 @@
 package com.omnistore.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.omnistore.entity.OrderStatus;
+
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class OrderResponseDto {
 
@@ -10,6 +14,21 @@ public class OrderResponseDto {
     private String status;
     private LocalDateTime createdAt;
 
+    // only present when the caller asked for expand=items
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<OrderItemResponseDto> items;
+
+    public OrderResponseDto() {}
+
+    // used by the JPQL constructor projection in OrderRepository
+    public OrderResponseDto(Long orderId, Long userId, Double totalAmount, OrderStatus status, LocalDateTime createdAt) {
+        this.orderId = orderId;
+        this.userId = userId;
+        this.totalAmount = totalAmount;
+        this.status = status == null ? null : status.name();
+        this.createdAt = createdAt;
+    }
+
     public Long getOrderId() { return orderId; }
     public void setOrderId(Long orderId) { this.orderId = orderId; }
 
@@ -24,4 +43,7 @@ public class OrderResponseDto {
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public List<OrderItemResponseDto> getItems() { return items; }
+    public void setItems(List<OrderItemResponseDto> items) { this.items = items; }
 }
@@ -0,0 +1,44 @@
+package com.omnistore.dto;
+
+import java.util.List;
+
+public class ProductBrowseResponseDto {
+
+    private List<ProductResponseDto> items;
+    private String nextCursor;
+    private int totalHits;
+    private List<FacetCountDto> priceFacets;
+    private List<FacetCountDto> ratingFacets;
+    private int inStockCount;
+
+    public ProductBrowseResponseDto() {}
+
+    public ProductBrowseResponseDto(List<ProductResponseDto> items, String nextCursor, int totalHits,
+                                    List<FacetCountDto> priceFacets, List<FacetCountDto> ratingFacets,
+                                    int inStockCount) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.totalHits = totalHits;
+        this.priceFacets = priceFacets;
+        this.ratingFacets = ratingFacets;
+        this.inStockCount = inStockCount;
+    }
+
+    public List<ProductResponseDto> getItems() { return items; }
+    public void setItems(List<ProductResponseDto> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public int getTotalHits() { return totalHits; }
+    public void setTotalHits(int totalHits) { this.totalHits = totalHits; }
+
+    public List<FacetCountDto> getPriceFacets() { return priceFacets; }
+    public void setPriceFacets(List<FacetCountDto> priceFacets) { this.priceFacets = priceFacets; }
+
+    public List<FacetCountDto> getRatingFacets() { return ratingFacets; }
+    public void setRatingFacets(List<FacetCountDto> ratingFacets) { this.ratingFacets = ratingFacets; }
+
+    public int getInStockCount() { return inStockCount; }
+    public void setInStockCount(int inStockCount) { this.inStockCount = inStockCount; }
+}
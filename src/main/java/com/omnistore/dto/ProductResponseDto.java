@@ -7,9 +7,31 @@ public class ProductResponseDto {
     private String description;
     private Double price;
     private Boolean active;
+    private Integer ratingCount;
+    private Double averageRating; // null until the first review
+    private int[] ratingHistogram; // reviews with 1..5 stars
 
     public ProductResponseDto() {}
 
+    // used by JPQL constructor projections, keep in sync with the select lists in ProductRepository
+    public ProductResponseDto(Long id, String name, String description, Double price, Boolean active,
+                              Long ratingSum, Integer ratingCount,
+                              Integer rating1, Integer rating2, Integer rating3, Integer rating4, Integer rating5) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.active = active;
+        setRatings(ratingSum, ratingCount, rating1, rating2, rating3, rating4, rating5);
+    }
+
+    public void setRatings(Long ratingSum, Integer ratingCount,
+                           Integer rating1, Integer rating2, Integer rating3, Integer rating4, Integer rating5) {
+        this.ratingCount = ratingCount;
+        this.averageRating = ratingCount == null || ratingCount == 0 ? null : (double) ratingSum / ratingCount;
+        this.ratingHistogram = new int[] {rating1, rating2, rating3, rating4, rating5};
+    }
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
@@ -24,4 +46,13 @@ public class ProductResponseDto {
 
     public Boolean getActive() { return active; }
     public void setActive(Boolean active) { this.active = active; }
+
+    public Integer getRatingCount() { return ratingCount; }
+    public void setRatingCount(Integer ratingCount) { this.ratingCount = ratingCount; }
+
+    public Double getAverageRating() { return averageRating; }
+    public void setAverageRating(Double averageRating) { this.averageRating = averageRating; }
+
+    public int[] getRatingHistogram() { return ratingHistogram; }
+    public void setRatingHistogram(int[] ratingHistogram) { this.ratingHistogram = ratingHistogram; }
 }
@@ -0,0 +1,27 @@
+package com.omnistore.dto;
+
+import java.util.List;
+
+public class ProductSearchResponseDto {
+
+    private List<ProductResponseDto> items;
+    private int totalHits;
+    private int offset;
+
+    public ProductSearchResponseDto() {}
+
+    public ProductSearchResponseDto(List<ProductResponseDto> items, int totalHits, int offset) {
+        this.items = items;
+        this.totalHits = totalHits;
+        this.offset = offset;
+    }
+
+    public List<ProductResponseDto> getItems() { return items; }
+    public void setItems(List<ProductResponseDto> items) { this.items = items; }
+
+    public int getTotalHits() { return totalHits; }
+    public void setTotalHits(int totalHits) { this.totalHits = totalHits; }
+
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+}
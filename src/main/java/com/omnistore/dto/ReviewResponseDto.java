@@ -10,6 +10,18 @@ public class ReviewResponseDto {
     private String comment;
     private LocalDateTime createdAt;
 
+    public ReviewResponseDto() {}
+
+    // used by the JPQL constructor projections in ProductReviewRepository
+    public ReviewResponseDto(Long id, Long userId, String userName, Integer rating, String comment, LocalDateTime createdAt) {
+        this.id = id;
+        this.userId = userId;
+        this.userName = userName;
+        this.rating = rating;
+        this.comment = comment;
+        this.createdAt = createdAt;
+    }
+
     public Long getId() {
         return id;
     }
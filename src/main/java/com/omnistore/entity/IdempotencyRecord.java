@@ -0,0 +1,57 @@
+package com.omnistore.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Backing table for the jdbc idempotency store; rows are written through JdbcTemplate,
+// the entity only exists so the schema is managed with the rest of the model
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+})
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key", length = 512)
+    private String key;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    // null while the first request is still running
+    private Integer responseStatus;
+
+    private String contentType;
+
+    @Lob
+    private byte[] responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    public IdempotencyRecord() {}
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public String getFingerprint() { return fingerprint; }
+    public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+
+    public Integer getResponseStatus() { return responseStatus; }
+    public void setResponseStatus(Integer responseStatus) { this.responseStatus = responseStatus; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public byte[] getResponseBody() { return responseBody; }
+    public void setResponseBody(byte[] responseBody) { this.responseBody = responseBody; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
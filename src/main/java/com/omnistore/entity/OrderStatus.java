@@ -1,9 +1,34 @@
 package com.omnistore.entity;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum OrderStatus {
     CREATED,
     PAID,
     SHIPPED,
     DELIVERED,
-    CANCELLED
+    CANCELLED;
+
+    // target status -> statuses it may be entered from; anything not listed is an illegal move
+    private static final Map<OrderStatus, Set<OrderStatus>> ALLOWED_FROM = new EnumMap<>(OrderStatus.class);
+
+    static {
+        ALLOWED_FROM.put(CREATED, EnumSet.noneOf(OrderStatus.class));
+        ALLOWED_FROM.put(PAID, EnumSet.of(CREATED));
+        ALLOWED_FROM.put(SHIPPED, EnumSet.of(PAID));
+        ALLOWED_FROM.put(DELIVERED, EnumSet.of(SHIPPED));
+        ALLOWED_FROM.put(CANCELLED, EnumSet.of(CREATED, PAID));
+    }
+
+    public Set<OrderStatus> allowedFrom() {
+        return Collections.unmodifiableSet(ALLOWED_FROM.get(this));
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return ALLOWED_FROM.get(target).contains(this);
+    }
 }
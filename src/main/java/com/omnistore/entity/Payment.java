@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_order", columnList = "order_id"),
+        @Index(name = "idx_payments_intent", columnList = "stripe_payment_intent_id")
+})
 public class Payment {
 
     @Id
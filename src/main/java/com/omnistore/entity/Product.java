@@ -1,6 +1,8 @@
 package com.omnistore.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.util.List;
 
 @Entity
@@ -18,16 +20,53 @@ public class Product {
 
     private Double price;
 
-    private Integer stock;
+    private Integer stock = 0;
 
     private Boolean active = true;
 
+    // stock is held in memory by InventoryService and flushed write-behind
+    private Boolean hotSku = false;
+
+    // Review aggregates, only written by the statements in ProductRepository (incrementRating and the
+    // rebuild). updatable = false keeps a stock or price save from writing back a stale copy.
+    @ColumnDefault("0")
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    private Long ratingSum = 0L;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_count", nullable = false, updatable = false)
+    private Integer ratingCount = 0;
+
+    // histogram: number of reviews with 1..5 stars
+    @ColumnDefault("0")
+    @Column(name = "rating_1", nullable = false, updatable = false)
+    private Integer rating1 = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_2", nullable = false, updatable = false)
+    private Integer rating2 = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_3", nullable = false, updatable = false)
+    private Integer rating3 = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_4", nullable = false, updatable = false)
+    private Integer rating4 = 0;
+
+    @ColumnDefault("0")
+    @Column(name = "rating_5", nullable = false, updatable = false)
+    private Integer rating5 = 0;
+
     @Version
     private Long version; // 🔐 optimistic locking
 
+    // not serialized: products are cached detached, so lazy collections must never be touched by Jackson
+    @JsonIgnore
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     private List<ProductCategory> productCategories;
 
+    @JsonIgnore
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     private List<ProductReview> reviews;
 
@@ -80,6 +119,70 @@ public class Product {
         this.active = active;
     }
 
+    public Boolean getHotSku() {
+        return hotSku;
+    }
+
+    public void setHotSku(Boolean hotSku) {
+        this.hotSku = hotSku;
+    }
+
+    public Long getRatingSum() {
+        return ratingSum;
+    }
+
+    public void setRatingSum(Long ratingSum) {
+        this.ratingSum = ratingSum;
+    }
+
+    public Integer getRatingCount() {
+        return ratingCount;
+    }
+
+    public void setRatingCount(Integer ratingCount) {
+        this.ratingCount = ratingCount;
+    }
+
+    public Integer getRating1() {
+        return rating1;
+    }
+
+    public void setRating1(Integer rating1) {
+        this.rating1 = rating1;
+    }
+
+    public Integer getRating2() {
+        return rating2;
+    }
+
+    public void setRating2(Integer rating2) {
+        this.rating2 = rating2;
+    }
+
+    public Integer getRating3() {
+        return rating3;
+    }
+
+    public void setRating3(Integer rating3) {
+        this.rating3 = rating3;
+    }
+
+    public Integer getRating4() {
+        return rating4;
+    }
+
+    public void setRating4(Integer rating4) {
+        this.rating4 = rating4;
+    }
+
+    public Integer getRating5() {
+        return rating5;
+    }
+
+    public void setRating5(Integer rating5) {
+        this.rating5 = rating5;
+    }
+
     public Long getVersion() {
         return version;
     }
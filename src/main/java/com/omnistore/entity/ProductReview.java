@@ -4,18 +4,22 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "product_reviews")
+// one index per listing order, so each keyset page is a single range scan for the product
+@Table(name = "product_reviews", indexes = {
+        @Index(name = "idx_reviews_product_created", columnList = "product_id, created_at"),
+        @Index(name = "idx_reviews_product_rating", columnList = "product_id, rating, id")
+})
 public class ProductReview {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
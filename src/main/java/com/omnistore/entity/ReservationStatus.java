@@ -0,0 +1,7 @@
+package com.omnistore.entity;
+
+public enum ReservationStatus {
+    RESERVED,
+    COMMITTED,
+    RELEASED
+}
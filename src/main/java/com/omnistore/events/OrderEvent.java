@@ -0,0 +1,7 @@
+package com.omnistore.events;
+
+import java.time.LocalDateTime;
+
+// Published in-process by OutboxDispatcher; delivery is at-least-once, so listeners must be idempotent
+public record OrderEvent(Long eventId, OrderEventType type, Long orderId, LocalDateTime occurredAt) {
+}
@@ -0,0 +1,8 @@
+package com.omnistore.events;
+
+public enum OrderEventType {
+    ORDER_PLACED,
+    ORDER_PAID,
+    ORDER_SHIPPED,
+    ORDER_CANCELLED
+}
@@ -0,0 +1,30 @@
+package com.omnistore.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Order funnel counts under /actuator/metrics/orders.events, plus how far delivery lags behind
+@Component
+public class OrderMetricsListener {
+
+    private final MeterRegistry meterRegistry;
+
+    public OrderMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener
+    public void onOrderEvent(OrderEvent event) {
+        Counter.builder("orders.events")
+                .tag("type", event.type().name())
+                .register(meterRegistry)
+                .increment();
+        meterRegistry.timer("orders.events.delivery.lag")
+                .record(Duration.between(event.occurredAt(), LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,25 @@
+package com.omnistore.events;
+
+import com.omnistore.services.StockReservationService;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// Settles stock reservations once the order's fate is known. Both calls are idempotent.
+@Component
+public class OrderStockListener {
+
+    private final StockReservationService stockReservationService;
+
+    public OrderStockListener(StockReservationService stockReservationService) {
+        this.stockReservationService = stockReservationService;
+    }
+
+    @EventListener
+    public void onOrderEvent(OrderEvent event) {
+        switch (event.type()) {
+            case ORDER_PAID -> stockReservationService.commit(event.orderId());
+            case ORDER_CANCELLED -> stockReservationService.release(event.orderId());
+            default -> { }
+        }
+    }
+}
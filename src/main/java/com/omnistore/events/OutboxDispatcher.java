@@ -0,0 +1,161 @@
+package com.omnistore.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.omnistore.entity.OutboxEvent;
+import com.omnistore.repository.OutboxEventRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the outbox and hands each event to the in-process {@code @EventListener}s.
+ *
+ * A batch is claimed in a short transaction: SKIP LOCKED picks the rows and a lease written on
+ * them keeps other dispatchers off while the listeners run, with no row lock or connection held.
+ * Only the oldest unpublished event of an order is claimable, so an order's events are delivered
+ * one at a time in sequence and different orders run in parallel on virtual threads. A row is
+ * marked published only after every listener returned, so a crash means redelivery (once the
+ * lease runs out), never loss. An event that fails {@code max-attempts} times parks its order:
+ * later events of that order stay in the outbox until the dead one is fixed and its attempts reset.
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration listenerTimeout;
+    private final Duration retention;
+
+    private final ExecutorService listenerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            TransactionTemplate transactionTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${outbox.batch-size:100}") int batchSize,
+                            @Value("${outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${outbox.listener-timeout:PT30S}") Duration listenerTimeout,
+                            @Value("${outbox.retention:P7D}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.listenerTimeout = listenerTimeout;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void dispatch() {
+        int claimed;
+        do {
+            List<OutboxEvent> batch = claimBatch();
+            claimed = batch.size();
+            if (claimed > 0) {
+                deliver(batch);
+            }
+        } while (claimed == batchSize);
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> batch = outboxEventRepository.lockClaimable(maxAttempts, now, PageRequest.of(0, batchSize));
+            // twice the listener timeout: the lease must outlive a delivery that is still being waited on
+            LocalDateTime leasedUntil = now.plus(listenerTimeout.multipliedBy(2));
+            batch.forEach(row -> row.setLeasedUntil(leasedUntil));
+            return batch;
+        });
+    }
+
+    private void deliver(List<OutboxEvent> batch) {
+        Map<OutboxEvent, Future<Boolean>> running = new LinkedHashMap<>();
+        batch.forEach(row -> running.put(row, listenerExecutor.submit(() -> deliver(row))));
+
+        List<Long> published = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        for (Map.Entry<OutboxEvent, Future<Boolean>> entry : running.entrySet()) {
+            OutboxEvent row = entry.getKey();
+            boolean delivered;
+            try {
+                delivered = entry.getValue().get(listenerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                entry.getValue().cancel(true);
+                log.warn("Listeners for outbox event {} (order {}) did not finish", row.getId(), row.getAggregateId(), e);
+                delivered = false;
+            }
+            if (delivered) {
+                published.add(row.getId());
+            } else {
+                failed.add(row);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!published.isEmpty()) {
+                outboxEventRepository.markPublished(published, LocalDateTime.now());
+            }
+            if (!failed.isEmpty()) {
+                outboxEventRepository.recordFailedAttempt(failed.stream().map(OutboxEvent::getId).toList());
+            }
+        });
+
+        for (OutboxEvent row : failed) {
+            if (row.getAttempts() + 1 >= maxAttempts) {
+                log.error("Giving up on outbox event {} ({} for order {}) after {} attempts; the order's later events are parked",
+                        row.getId(), row.getEventType(), row.getAggregateId(), row.getAttempts() + 1);
+            }
+        }
+    }
+
+    private boolean deliver(OutboxEvent row) {
+        try {
+            OrderEvent payload = objectMapper.readValue(row.getPayload(), OrderEvent.class);
+            eventPublisher.publishEvent(new OrderEvent(row.getId(), payload.type(), payload.orderId(), payload.occurredAt()));
+            return true;
+        } catch (Exception e) {
+            log.warn("Listener failed for outbox event {} ({} for order {})",
+                    row.getId(), row.getEventType(), row.getAggregateId(), e);
+            return false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.purge-interval-ms:3600000}")
+    public void purgePublished() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minus(retention)));
+        if (deleted != null && deleted > 0) {
+            log.info("Purged {} published outbox events", deleted);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        listenerExecutor.shutdown();
+        listenerExecutor.awaitTermination(listenerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
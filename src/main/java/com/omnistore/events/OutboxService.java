@@ -0,0 +1,34 @@
+package com.omnistore.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.omnistore.entity.OutboxEvent;
+import com.omnistore.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // MANDATORY: an event must commit (or roll back) together with the change it announces
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(OrderEventType type, Long orderId) {
+        OrderEvent event = new OrderEvent(null, type, orderId, LocalDateTime.now());
+        try {
+            outboxEventRepository.save(new OutboxEvent(orderId, type.name(), objectMapper.writeValueAsString(event)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + type + " for order " + orderId, e);
+        }
+    }
+}
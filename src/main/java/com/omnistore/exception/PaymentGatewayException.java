@@ -0,0 +1,22 @@
+package com.omnistore.exception;
+
+// The payment provider failed, timed out or is being shed (bulkhead full, circuit open).
+// Retryable failures map to 503 so clients back off and try again, the rest to 502.
+public class PaymentGatewayException extends RuntimeException {
+
+    private final boolean retryable;
+
+    public PaymentGatewayException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public PaymentGatewayException(String message, Throwable cause) {
+        super(message, cause);
+        this.retryable = false;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
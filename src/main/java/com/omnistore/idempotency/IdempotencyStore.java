@@ -0,0 +1,37 @@
+package com.omnistore.idempotency;
+
+import java.time.Duration;
+
+/**
+ * Remembers the outcome of requests sent with an Idempotency-Key. The filter claims a key
+ * before running a request and either completes it with the response or releases it when
+ * the request failed, so that a retry runs again.
+ */
+public interface IdempotencyStore {
+
+    enum State {
+        // the caller owns the key and must complete or release it
+        ACQUIRED,
+        // a response is stored; replay it
+        COMPLETED,
+        // another request holds the key and has not finished yet
+        IN_FLIGHT,
+        // the key was used before with a different request body
+        MISMATCH
+    }
+
+    record Claim(State state, IdempotentResponse response) {
+        static Claim of(State state) {
+            return new Claim(state, null);
+        }
+    }
+
+    Claim claim(String key, String fingerprint);
+
+    void complete(String key, IdempotentResponse response);
+
+    void release(String key);
+
+    // Blocks until the in-flight request under key finishes or maxWait passes; callers claim again afterwards
+    void await(String key, Duration maxWait) throws InterruptedException;
+}
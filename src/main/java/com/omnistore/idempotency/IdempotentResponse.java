@@ -0,0 +1,5 @@
+package com.omnistore.idempotency;
+
+// What the first request under a key answered, replayed verbatim to its retries
+public record IdempotentResponse(int status, String contentType, byte[] body) {
+}
@@ -0,0 +1,90 @@
+package com.omnistore.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keys held in a concurrent map. A duplicate that arrives while the first request is running
+ * waits on that request's future instead of polling, so concurrent retries collapse into one
+ * execution. Single node only: use the jdbc store when scaling out.
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    // result completes with the response, or with null when the key is released
+    // an expired entry whose request is still running is kept until it completes or is released
+    record Entry(String fingerprint, CompletableFuture<IdempotentResponse> result, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return expiresAtMillis <= now;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public InMemoryIdempotencyStore(@Value("${idempotency.ttl:PT24H}") Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @Override
+    public Claim claim(String key, String fingerprint) {
+        long now = System.currentTimeMillis();
+        Entry mine = new Entry(fingerprint, new CompletableFuture<>(), now + ttlMillis);
+        Entry current = entries.compute(key, (k, existing) ->
+                existing == null || existing.isExpired(now) && existing.result().isDone() ? mine : existing);
+
+        if (current == mine) {
+            return Claim.of(State.ACQUIRED);
+        }
+        if (!current.fingerprint().equals(fingerprint)) {
+            return Claim.of(State.MISMATCH);
+        }
+        IdempotentResponse response = current.result().getNow(null);
+        return response == null ? Claim.of(State.IN_FLIGHT) : new Claim(State.COMPLETED, response);
+    }
+
+    @Override
+    public void complete(String key, IdempotentResponse response) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.result().complete(response);
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            entry.result().complete(null);
+        }
+    }
+
+    @Override
+    public void await(String key, Duration maxWait) throws InterruptedException {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        try {
+            entry.result().get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // the caller claims again and decides
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now) && entry.result().isDone());
+    }
+}
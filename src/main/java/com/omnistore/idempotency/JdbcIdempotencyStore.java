@@ -0,0 +1,114 @@
+package com.omnistore.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Keys in the idempotency_keys table, shared by every node. The primary key decides which
+ * request runs; duplicates on any node poll the row until it has a response. A row whose
+ * request never finished (the node died) expires after {@code idempotency.in-flight-timeout}
+ * and the next retry runs it again.
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String INSERT_SQL =
+            "insert into idempotency_keys (idempotency_key, fingerprint, created_at, expires_at) values (?, ?, ?, ?)";
+
+    private static final String SELECT_SQL =
+            "select fingerprint, response_status, content_type, response_body, expires_at "
+                    + "from idempotency_keys where idempotency_key = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Duration inFlightTimeout;
+    private final long pollIntervalMillis;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                @Value("${idempotency.ttl:PT24H}") Duration ttl,
+                                @Value("${idempotency.jdbc.in-flight-timeout:PT1M}") Duration inFlightTimeout,
+                                @Value("${idempotency.jdbc.poll-interval-ms:100}") long pollIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.inFlightTimeout = inFlightTimeout;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    private record Row(String fingerprint, Integer status, String contentType, byte[] body, LocalDateTime expiresAt) {
+    }
+
+    @Override
+    public Claim claim(String key, String fingerprint) {
+        // two rounds: the second one after clearing an expired row left by an earlier request
+        for (int attempt = 0; attempt < 2; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                jdbcTemplate.update(INSERT_SQL, key, fingerprint,
+                        Timestamp.valueOf(now), Timestamp.valueOf(now.plus(inFlightTimeout)));
+                return Claim.of(State.ACQUIRED);
+            } catch (DuplicateKeyException e) {
+                // someone holds or held the key
+            }
+
+            Row row = find(key);
+            if (row == null) {
+                continue; // released in between
+            }
+            if (row.expiresAt().isBefore(now)) {
+                jdbcTemplate.update("delete from idempotency_keys where idempotency_key = ? and expires_at < ?",
+                        key, Timestamp.valueOf(now));
+                continue;
+            }
+            if (!row.fingerprint().equals(fingerprint)) {
+                return Claim.of(State.MISMATCH);
+            }
+            return row.status() == null
+                    ? Claim.of(State.IN_FLIGHT)
+                    : new Claim(State.COMPLETED, new IdempotentResponse(row.status(), row.contentType(), row.body()));
+        }
+        return Claim.of(State.IN_FLIGHT);
+    }
+
+    @Override
+    public void complete(String key, IdempotentResponse response) {
+        jdbcTemplate.update("update idempotency_keys set response_status = ?, content_type = ?, response_body = ?, "
+                        + "expires_at = ? where idempotency_key = ?",
+                response.status(), response.contentType(), response.body(),
+                Timestamp.valueOf(LocalDateTime.now().plus(ttl)), key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update("delete from idempotency_keys where idempotency_key = ? and response_status is null", key);
+    }
+
+    @Override
+    public void await(String key, Duration maxWait) throws InterruptedException {
+        Thread.sleep(Math.max(1, Math.min(maxWait.toMillis(), pollIntervalMillis)));
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:60000}")
+    public void deleteExpired() {
+        jdbcTemplate.update("delete from idempotency_keys where expires_at < ?", Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private Row find(String key) {
+        List<Row> rows = jdbcTemplate.query(SELECT_SQL, (rs, i) -> new Row(
+                rs.getString("fingerprint"),
+                (Integer) rs.getObject("response_status"),
+                rs.getString("content_type"),
+                rs.getBytes("response_body"),
+                rs.getTimestamp("expires_at").toLocalDateTime()), key);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
@@ -0,0 +1,96 @@
+package com.omnistore.payment;
+
+import com.omnistore.exception.PaymentGatewayException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * In-process provider for development and load tests: no network, no state. Latency and outcome
+ * are drawn from a random stream seeded by (payment.mock.seed, order id), so the same order
+ * always gets the same answer and a load test run is repeatable.
+ *
+ * Latency is latency-base plus an exponential tail with mean latency-tail-mean. Of all calls,
+ * error-rate fail with a provider error and decline-rate come back "canceled"; the rest succeed.
+ */
+@Component
+public class MockPaymentGateway implements PaymentGateway {
+
+    public static final String PROVIDER = "MOCK_GATEWAY";
+
+    private static final String ID_PREFIX = "mock_pi_";
+
+    private final long seed;
+    private final long latencyBaseNanos;
+    private final long latencyTailMeanNanos;
+    private final double declineRate;
+    private final double errorRate;
+
+    public MockPaymentGateway(@Value("${payment.mock.seed:42}") long seed,
+                              @Value("${payment.mock.latency-base:PT0S}") Duration latencyBase,
+                              @Value("${payment.mock.latency-tail-mean:PT0S}") Duration latencyTailMean,
+                              @Value("${payment.mock.decline-rate:0.1}") double declineRate,
+                              @Value("${payment.mock.error-rate:0.0}") double errorRate) {
+        this.seed = seed;
+        this.latencyBaseNanos = latencyBase.toNanos();
+        this.latencyTailMeanNanos = latencyTailMean.toNanos();
+        this.declineRate = declineRate;
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public String provider() {
+        return PROVIDER;
+    }
+
+    @Override
+    public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+        return respond(orderId);
+    }
+
+    @Override
+    public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+        if (!paymentIntentId.startsWith(ID_PREFIX)) {
+            throw new PaymentGatewayException("Unknown mock payment intent: " + paymentIntentId, false);
+        }
+        return respond(Long.parseLong(paymentIntentId.substring(ID_PREFIX.length())));
+    }
+
+    @Override
+    public PaymentIntentResult cancelIntent(String paymentIntentId) {
+        // mock intents are settled as soon as they are created
+        throw new PaymentGatewayException("Mock payment intent " + paymentIntentId + " is already settled", false);
+    }
+
+    private PaymentIntentResult respond(long orderId) {
+        // golden-ratio multiplier spreads consecutive order ids over the seed space
+        SplittableRandom random = new SplittableRandom(seed ^ (orderId * 0x9E3779B97F4A7C15L));
+        simulateLatency(random);
+
+        double roll = random.nextDouble();
+        if (roll < errorRate) {
+            throw new PaymentGatewayException("Mock provider error for order " + orderId, false);
+        }
+        String status = roll < errorRate + declineRate ? "canceled" : "succeeded";
+        String id = ID_PREFIX + orderId;
+        return new PaymentIntentResult(id, status, id + "_secret");
+    }
+
+    private void simulateLatency(SplittableRandom random) {
+        long nanos = latencyBaseNanos;
+        if (latencyTailMeanNanos > 0) {
+            nanos += (long) (-latencyTailMeanNanos * Math.log(1 - random.nextDouble()));
+        }
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Mock provider call interrupted", true);
+        }
+    }
+}
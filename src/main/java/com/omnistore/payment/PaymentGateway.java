@@ -0,0 +1,22 @@
+package com.omnistore.payment;
+
+/**
+ * A payment provider. Implementations are Spring beans picked up by PaymentGatewayRegistry
+ * and chosen by the provider name stored on each Payment.
+ *
+ * Calls are blocking and may be slow; they are always made through the registry, which runs
+ * them outside DB transactions with the provider's own bulkhead, timeout and circuit breaker.
+ * Failures are reported as PaymentGatewayException.
+ */
+public interface PaymentGateway {
+
+    // value of Payment.provider this gateway serves
+    String provider();
+
+    PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency);
+
+    PaymentIntentResult retrieveIntent(String paymentIntentId);
+
+    // for an intent nobody is going to pay any more; refused once it is processing or settled
+    PaymentIntentResult cancelIntent(String paymentIntentId);
+}
@@ -0,0 +1,98 @@
+package com.omnistore.payment;
+
+import com.omnistore.exception.PaymentGatewayException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs payment provider calls on virtual threads behind a bulkhead, a per-call timeout and a
+ * circuit breaker. Every failure surfaces as a PaymentGatewayException.
+ *
+ * Calls must not be made inside a DB transaction: that would hold a pooled connection for the
+ * whole provider round trip, which is exactly what this class exists to avoid.
+ *
+ * PaymentGatewayRegistry creates one per provider.
+ */
+public class PaymentGatewayExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // bounds calls actually running against the provider, including ones the caller gave up on
+    private final Semaphore bulkhead;
+    private final Duration bulkheadWait;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+
+    public PaymentGatewayExecutor(int maxConcurrent, Duration bulkheadWait, Duration timeout,
+                                  int failureThreshold, Duration openDuration) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.bulkheadWait = bulkheadWait;
+        this.timeout = timeout;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+    }
+
+    public <T> T call(String operation, Callable<T> call) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(operation + " must not run inside a database transaction");
+        }
+
+        try {
+            if (!bulkhead.tryAcquire(bulkheadWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new PaymentGatewayException(operation + ": too many payment requests in progress", true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException(operation + " interrupted", true);
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            throw new PaymentGatewayException(operation + ": payment provider unavailable, try again later", true);
+        }
+
+        Future<T> future = executor.submit(() -> {
+            try {
+                return call.call();
+            } finally {
+                bulkhead.release();
+            }
+        });
+
+        try {
+            T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            circuitBreaker.onFailure();
+            throw new PaymentGatewayException(operation + " timed out after " + timeout.toMillis() + " ms", true);
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            if (e.getCause() instanceof PaymentGatewayException gatewayException) {
+                throw gatewayException;
+            }
+            throw new PaymentGatewayException(operation + " failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            // settles a half-open probe; the provider may be fine, the circuit just re-opens briefly
+            circuitBreaker.onFailure();
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException(operation + " interrupted", true);
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
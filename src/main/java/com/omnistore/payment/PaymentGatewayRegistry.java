@@ -0,0 +1,79 @@
+package com.omnistore.payment;
+
+import com.omnistore.exception.BadRequestException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the PaymentGateway for a provider name and runs calls against it. Each provider gets
+ * its own PaymentGatewayExecutor, so a failing provider opens only its own circuit and a slow one
+ * fills only its own bulkhead.
+ *
+ * Settings come from payment.gateway.* and can be overridden per provider under
+ * payment.gateway.{provider}.*, with the provider name lower-cased and '_' as '-'
+ * (e.g. payment.gateway.mock-gateway.max-concurrent).
+ */
+@Component
+public class PaymentGatewayRegistry {
+
+    @FunctionalInterface
+    public interface GatewayCall<T> {
+        T apply(PaymentGateway gateway);
+    }
+
+    private final Map<String, PaymentGateway> gateways = new HashMap<>();
+    private final Map<String, PaymentGatewayExecutor> executors = new HashMap<>();
+
+    public PaymentGatewayRegistry(List<PaymentGateway> gateways, Environment environment) {
+        for (PaymentGateway gateway : gateways) {
+            String provider = gateway.provider();
+            if (this.gateways.put(provider, gateway) != null) {
+                throw new IllegalStateException("Two payment gateways for provider " + provider);
+            }
+            executors.put(provider, createExecutor(provider, Binder.get(environment)));
+        }
+    }
+
+    public <T> T call(String provider, String operation, GatewayCall<T> call) {
+        PaymentGateway gateway = gateways.get(provider);
+        if (gateway == null) {
+            throw new BadRequestException("Unknown payment provider: " + provider);
+        }
+        return executors.get(provider).call(provider + ": " + operation, () -> call.apply(gateway));
+    }
+
+    public CircuitBreaker.State getCircuitState(String provider) {
+        PaymentGatewayExecutor executor = executors.get(provider);
+        if (executor == null) {
+            throw new BadRequestException("Unknown payment provider: " + provider);
+        }
+        return executor.getCircuitState();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(PaymentGatewayExecutor::shutdown);
+    }
+
+    private static PaymentGatewayExecutor createExecutor(String provider, Binder binder) {
+        String prefix = "payment.gateway." + provider.toLowerCase().replace('_', '-') + ".";
+        return new PaymentGatewayExecutor(
+                setting(binder, prefix, "max-concurrent", Integer.class, 20),
+                setting(binder, prefix, "bulkhead-wait", Duration.class, Duration.ofMillis(500)),
+                setting(binder, prefix, "timeout", Duration.class, Duration.ofSeconds(10)),
+                setting(binder, prefix, "circuit.failure-threshold", Integer.class, 5),
+                setting(binder, prefix, "circuit.open-duration", Duration.class, Duration.ofSeconds(30)));
+    }
+
+    private static <T> T setting(Binder binder, String providerPrefix, String key, Class<T> type, T defaultValue) {
+        T shared = binder.bind("payment.gateway." + key, type).orElse(defaultValue);
+        return binder.bind(providerPrefix + key, type).orElse(shared);
+    }
+}
@@ -0,0 +1,5 @@
+package com.omnistore.payment;
+
+// The parts of a provider payment intent the app keeps
+public record PaymentIntentResult(String id, String status, String clientSecret) {
+}
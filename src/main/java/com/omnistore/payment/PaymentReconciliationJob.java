@@ -0,0 +1,291 @@
+package com.omnistore.payment;
+
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.repository.PaymentRepository;
+import com.omnistore.services.OrderService;
+import com.omnistore.services.PaymentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Finds orders still CREATED whose payment went through (or failed) without the client ever
+ * calling confirm, and repairs them. min-age + interval stays below the reservation TTL, so such
+ * an order is normally repaired before its stock would expire.
+ *
+ * Payments with a CREATED order are scanned in keyset pages of chunk-size, so memory stays at
+ * one page however large the tables are, and the scan takes no locks. For each page the
+ * unsettled intents are fetched from their provider (outside any transaction, a bounded
+ * number at a time). The repairs for the page are then applied in one short transaction:
+ * payment statuses as bulk conditional updates, orders through the CAS transitions, so
+ * anything that moved on since the read is left alone.
+ *
+ * Orders that were cancelled while their payment went through anyway (a charge landing after the
+ * cancel) are scanned the same way. They cannot be repaired here since their stock is back on sale;
+ * they are logged and counted in the payments.reconciliation.cancelled_paid gauge for a refund.
+ * Intents of cancelled orders that are still waiting for the customer are cancelled at the provider
+ * and their payment marked FAILED, which takes them out of the scan. Only payments younger than
+ * cancelled-lookback are scanned, so intents the provider keeps refusing to answer for or cancel
+ * drop out too.
+ *
+ * Metrics: payments.reconciliation.{scanned,drift,repaired,provider.errors}, the
+ * payments.reconciliation.cancelled_paid gauge and payments.reconciliation.run (timer).
+ */
+@Component
+public class PaymentReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentReconciliationJob.class);
+
+    // payment statuses of intents that still wait for the customer and can be cancelled
+    private static final Set<String> ABANDONED_STATUSES = Set.of("requires_payment_method", "REQUIRES_ACTION", "requires_capture");
+
+    private final PaymentRepository paymentRepository;
+    private final OrderService orderService;
+    private final PaymentGatewayRegistry gateways;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Duration minAge;
+    private final Duration cancelledLookback;
+    private final int providerConcurrency;
+    // cancelled orders with a successful payment, as of the last run
+    private final AtomicInteger cancelledPaid;
+
+    public PaymentReconciliationJob(PaymentRepository paymentRepository,
+                                    OrderService orderService,
+                                    PaymentGatewayRegistry gateways,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${payment.reconciliation.enabled:true}") boolean enabled,
+                                    @Value("${payment.reconciliation.chunk-size:500}") int chunkSize,
+                                    @Value("${payment.reconciliation.min-age:PT5M}") Duration minAge,
+                                    @Value("${payment.reconciliation.cancelled-lookback:P7D}") Duration cancelledLookback,
+                                    @Value("${payment.reconciliation.provider-concurrency:8}") int providerConcurrency,
+                                    @Value("${payment.reconciliation.interval-ms:240000}") long intervalMs,
+                                    @Value("${inventory.reservation.ttl:PT15M}") Duration reservationTtl) {
+        this.paymentRepository = paymentRepository;
+        this.orderService = orderService;
+        this.gateways = gateways;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.minAge = minAge;
+        this.cancelledLookback = cancelledLookback;
+        this.providerConcurrency = providerConcurrency;
+        this.cancelledPaid = meterRegistry.gauge("payments.reconciliation.cancelled_paid", new AtomicInteger());
+        if (minAge.plusMillis(intervalMs).compareTo(reservationTtl) >= 0) {
+            log.warn("payment.reconciliation.min-age + interval-ms ({} + {} ms) is not below the reservation TTL {}: "
+                    + "unpaid orders can expire before their payment is reconciled", minAge, intervalMs, reservationTtl);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.reconciliation.interval-ms:240000}",
+            initialDelayString = "${payment.reconciliation.initial-delay-ms:60000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // payments younger than min-age may still be confirmed by their client
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdBefore = now.minus(minAge);
+        LocalDateTime cancelledAfter = now.minus(cancelledLookback);
+
+        int repaired = scan(afterId -> paymentRepository.findReconciliationPage(
+                OrderStatus.CREATED, createdBefore, afterId, PageRequest.of(0, chunkSize)), this::reconcileChunk);
+        int paidButCancelled = scan(afterId -> paymentRepository.findCancelledOrderPaymentPage(
+                PaymentService.FAILED_STATUSES, cancelledAfter, createdBefore, afterId, PageRequest.of(0, chunkSize)),
+                this::reconcileCancelledChunk);
+        cancelledPaid.set(paidButCancelled);
+
+        sample.stop(meterRegistry.timer("payments.reconciliation.run"));
+        if (repaired > 0) {
+            log.info("Reconciliation repaired {} payments and orders", repaired);
+        }
+    }
+
+    // walks the keyset pages and sums what the handler returns for each
+    private int scan(LongFunction<List<ReconciliationCandidate>> pages,
+                     ToIntFunction<List<ReconciliationCandidate>> handler) {
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            List<ReconciliationCandidate> page = pages.apply(afterId);
+            if (page.isEmpty()) {
+                break;
+            }
+            try {
+                total += handler.applyAsInt(page);
+            } catch (Exception e) {
+                // a bad page must not stop the rest of the scan; it is retried next run
+                log.warn("Reconciliation of payments {}..{} failed", page.get(0).paymentId(),
+                        page.get(page.size() - 1).paymentId(), e);
+            }
+            meterRegistry.counter("payments.reconciliation.scanned").increment(page.size());
+            afterId = page.get(page.size() - 1).paymentId();
+            if (page.size() < chunkSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    // returns the number of repaired rows (payments and orders)
+    int reconcileChunk(List<ReconciliationCandidate> chunk) {
+        Map<Long, String> providerStatuses = fetchProviderStatuses(chunk);
+
+        Map<String, List<Long>> paymentUpdates = new HashMap<>();
+        List<Long> paidOrders = new ArrayList<>();
+        List<Long> failedOrders = new ArrayList<>();
+        for (ReconciliationCandidate candidate : chunk) {
+            String status = providerStatuses.getOrDefault(candidate.paymentId(), candidate.paymentStatus());
+            if (!Objects.equals(status, candidate.paymentStatus())) {
+                drift("payment_status");
+                paymentUpdates.computeIfAbsent(status, s -> new ArrayList<>()).add(candidate.paymentId());
+                if ("FAILED".equals(status)) {
+                    // only a failure reported just now cancels; an old FAILED row may sit next to a newer attempt
+                    failedOrders.add(candidate.orderId());
+                }
+            }
+            if (PaymentService.PAID_STATUSES.contains(status)) {
+                drift("order_unpaid");
+                paidOrders.add(candidate.orderId());
+            }
+        }
+        if (paymentUpdates.isEmpty() && paidOrders.isEmpty()) {
+            return 0;
+        }
+
+        Integer repaired = transactionTemplate.execute(status -> {
+            int rows = updatePaymentStatuses(paymentUpdates);
+            for (Long orderId : paidOrders) {
+                if (orderService.tryTransition(orderId, OrderStatus.PAID)) {
+                    repairedCounter("order_paid").increment();
+                    rows++;
+                }
+            }
+            for (Long orderId : failedOrders) {
+                if (!paidOrders.contains(orderId) && orderService.cancelUnpaid(orderId)) {
+                    repairedCounter("order_cancelled").increment();
+                    rows++;
+                }
+            }
+            return rows;
+        });
+        return repaired == null ? 0 : repaired;
+    }
+
+    // returns the number of cancelled orders whose payment went through
+    int reconcileCancelledChunk(List<ReconciliationCandidate> chunk) {
+        Map<Long, String> providerStatuses = fetchProviderStatuses(chunk);
+
+        // nobody pays for a cancelled order any more; a cancelled intent is FAILED and leaves the scan
+        List<ReconciliationCandidate> abandoned = chunk.stream()
+                .filter(candidate -> ABANDONED_STATUSES.contains(providerStatuses.getOrDefault(candidate.paymentId(), "")))
+                .toList();
+        Map<Long, String> cancelled = callProvider(abandoned, "cancel abandoned payment intent",
+                (gateway, intentId) -> gateway.cancelIntent(intentId));
+        repairedCounter("intent_cancelled").increment(cancelled.size());
+        providerStatuses.putAll(cancelled);
+
+        Map<String, List<Long>> paymentUpdates = new HashMap<>();
+        int paid = 0;
+        for (ReconciliationCandidate candidate : chunk) {
+            String status = providerStatuses.getOrDefault(candidate.paymentId(), candidate.paymentStatus());
+            if (!Objects.equals(status, candidate.paymentStatus())) {
+                drift("payment_status");
+                paymentUpdates.computeIfAbsent(status, s -> new ArrayList<>()).add(candidate.paymentId());
+            }
+            if (PaymentService.PAID_STATUSES.contains(status)) {
+                paid++;
+                log.warn("Order {} is CANCELLED but payment {} went through; it needs a refund",
+                        candidate.orderId(), candidate.paymentId());
+            }
+        }
+        if (!paymentUpdates.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> updatePaymentStatuses(paymentUpdates));
+        }
+        return paid;
+    }
+
+    private int updatePaymentStatuses(Map<String, List<Long>> paymentUpdates) {
+        int rows = 0;
+        for (Map.Entry<String, List<Long>> update : paymentUpdates.entrySet()) {
+            int updated = paymentRepository.updateUnsettledStatus(update.getValue(), update.getKey(),
+                    PaymentService.SETTLED_STATUSES);
+            repairedCounter("payment_status").increment(updated);
+            rows += updated;
+        }
+        return rows;
+    }
+
+    // Asks the provider about every unsettled intent in the chunk
+    private Map<Long, String> fetchProviderStatuses(List<ReconciliationCandidate> chunk) {
+        List<ReconciliationCandidate> unsettled = chunk.stream()
+                .filter(candidate -> candidate.paymentIntentId() != null
+                        && !PaymentService.SETTLED_STATUSES.contains(candidate.paymentStatus()))
+                .toList();
+        return callProvider(unsettled, "reconcile payment intent",
+                (gateway, intentId) -> gateway.retrieveIntent(intentId));
+    }
+
+    // Runs the call for each candidate's intent, a bounded number at a time, and returns the resulting
+    // payment statuses; failed calls are counted and skipped
+    private Map<Long, String> callProvider(List<ReconciliationCandidate> candidates, String operation,
+                                           BiFunction<PaymentGateway, String, PaymentIntentResult> call) {
+        Map<Long, String> statuses = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(providerConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ReconciliationCandidate candidate : candidates) {
+                permits.acquireUninterruptibly();
+                executor.submit(() -> {
+                    try {
+                        PaymentIntentResult intent = gateways.call(candidate.provider(), operation,
+                                gateway -> call.apply(gateway, candidate.paymentIntentId()));
+                        statuses.put(candidate.paymentId(), PaymentService.paymentStatusFor(intent.status()));
+                    } catch (RuntimeException e) {
+                        meterRegistry.counter("payments.reconciliation.provider.errors",
+                                "provider", String.valueOf(candidate.provider())).increment();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        return statuses;
+    }
+
+    private void drift(String kind) {
+        meterRegistry.counter("payments.reconciliation.drift", "kind", kind).increment();
+    }
+
+    private Counter repairedCounter(String kind) {
+        return meterRegistry.counter("payments.reconciliation.repaired", "kind", kind);
+    }
+}
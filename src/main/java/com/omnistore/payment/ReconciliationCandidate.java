@@ -0,0 +1,6 @@
+package com.omnistore.payment;
+
+// A payment as read by the reconciliation scan (its order CREATED, or CANCELLED with a payment that did not fail)
+public record ReconciliationCandidate(Long paymentId, Long orderId, String provider,
+                                      String paymentIntentId, String paymentStatus) {
+}
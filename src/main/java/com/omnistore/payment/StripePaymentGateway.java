@@ -0,0 +1,88 @@
+package com.omnistore.payment;
+
+import com.omnistore.exception.PaymentGatewayException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Stripe PaymentIntents. The API key travels in per-request options, never through the global Stripe.apiKey.
+@Component
+public class StripePaymentGateway implements PaymentGateway {
+
+    public static final String PROVIDER = "STRIPE";
+
+    private final String secretKey;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public StripePaymentGateway(@Value("${stripe.secret.key}") String secretKey,
+                                @Value("${stripe.connect-timeout:PT3S}") Duration connectTimeout,
+                                @Value("${payment.gateway.stripe.timeout:${payment.gateway.timeout:PT10S}}") Duration callTimeout) {
+        this.secretKey = secretKey;
+        this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+        // the gateway executor gives up at callTimeout; the socket should not outlive it by much
+        this.readTimeoutMillis = (int) callTimeout.toMillis();
+    }
+
+    @Override
+    public String provider() {
+        return PROVIDER;
+    }
+
+    @Override
+    public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+        PaymentIntentCreateParams createParams = PaymentIntentCreateParams.builder()
+                .setCurrency(currency)
+                .setAmount(amountInCents)
+                .putMetadata("order_id", orderId.toString())
+                .build();
+
+        try {
+            // one intent per order even when a timed-out create is retried
+            return toResult(PaymentIntent.create(createParams, options("order-" + orderId + "-intent")));
+        } catch (StripeException e) {
+            throw new PaymentGatewayException("Stripe: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+        try {
+            return toResult(PaymentIntent.retrieve(paymentIntentId, options(null)));
+        } catch (StripeException e) {
+            throw new PaymentGatewayException("Stripe: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public PaymentIntentResult cancelIntent(String paymentIntentId) {
+        try {
+            RequestOptions options = options(null);
+            return toResult(PaymentIntent.retrieve(paymentIntentId, options).cancel(options));
+        } catch (StripeException e) {
+            throw new PaymentGatewayException("Stripe: " + e.getMessage(), e);
+        }
+    }
+
+    private RequestOptions options(String idempotencyKey) {
+        RequestOptions.RequestOptionsBuilder builder = RequestOptions.builder()
+                .setApiKey(secretKey)
+                .setConnectTimeout(connectTimeoutMillis)
+                .setReadTimeout(readTimeoutMillis)
+                // retries are the caller's decision, bounded by the gateway timeout
+                .setMaxNetworkRetries(0);
+        if (idempotencyKey != null) {
+            builder.setIdempotencyKey(idempotencyKey);
+        }
+        return builder.build();
+    }
+
+    private PaymentIntentResult toResult(PaymentIntent intent) {
+        return new PaymentIntentResult(intent.getId(), intent.getStatus(), intent.getClientSecret());
+    }
+}
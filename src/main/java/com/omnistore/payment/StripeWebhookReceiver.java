@@ -0,0 +1,69 @@
+package com.omnistore.payment;
+
+import com.omnistore.exception.BadRequestException;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.net.Webhook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Front half of webhook handling: verify the signature, store the raw event in webhook_inbox
+ * and return, so Stripe gets its 2xx in milliseconds even during a burst. The event id is the
+ * primary key, so a redelivered event is dropped on insert. WebhookInboxProcessor does the rest.
+ */
+@Component
+public class StripeWebhookReceiver {
+
+    private static final String INSERT_SQL =
+            "insert into webhook_inbox (id, provider, event_type, payload, received_at, attempts) values (?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WebhookInboxProcessor processor;
+    private final String webhookSecret;
+    private final long toleranceSeconds;
+
+    public StripeWebhookReceiver(JdbcTemplate jdbcTemplate,
+                                 WebhookInboxProcessor processor,
+                                 @Value("${stripe.webhook.secret:}") String webhookSecret,
+                                 @Value("${stripe.webhook.tolerance-seconds:300}") long toleranceSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.processor = processor;
+        this.webhookSecret = webhookSecret;
+        this.toleranceSeconds = toleranceSeconds;
+    }
+
+    // returns false for an event that was already received
+    public boolean receive(String payload, String signatureHeader) {
+        if (webhookSecret.isBlank()) {
+            // fail with 5xx, not 4xx: Stripe keeps retrying until the secret is configured
+            throw new IllegalStateException("stripe.webhook.secret is not configured");
+        }
+        if (signatureHeader == null) {
+            throw new BadRequestException("Missing Stripe-Signature header");
+        }
+
+        Event event;
+        try {
+            // checks the HMAC and that the timestamp is within tolerance (replay protection)
+            event = Webhook.constructEvent(payload, signatureHeader, webhookSecret, toleranceSeconds);
+        } catch (SignatureVerificationException e) {
+            throw new BadRequestException("Invalid Stripe signature");
+        }
+
+        try {
+            jdbcTemplate.update(INSERT_SQL, event.getId(), StripePaymentGateway.PROVIDER, event.getType(), payload,
+                    Timestamp.valueOf(LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+
+        processor.submit(event.getId());
+        return true;
+    }
+}
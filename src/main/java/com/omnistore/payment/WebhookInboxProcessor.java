@@ -0,0 +1,141 @@
+package com.omnistore.payment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.omnistore.entity.WebhookEvent;
+import com.omnistore.repository.WebhookEventRepository;
+import com.omnistore.services.PaymentService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Back half of webhook handling. Events are applied by a fixed worker pool, each in its own
+ * transaction that locks the inbox row (SKIP LOCKED) and marks it processed together with the
+ * Payment / Order changes, so an event takes effect at most once even across nodes.
+ *
+ * The receiver hands new ids straight to the pool; when its queue is full the id is dropped and
+ * the sweeper picks the row up later, as it does rows that failed or were left by a crash.
+ */
+@Component
+public class WebhookInboxProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookInboxProcessor.class);
+
+    private static final String PAYMENT_INTENT_EVENT_PREFIX = "payment_intent.";
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxAttempts;
+    private final int sweepBatchSize;
+    private final Duration sweepGrace;
+    private final Duration retention;
+    private final ThreadPoolExecutor workers;
+
+    public WebhookInboxProcessor(WebhookEventRepository webhookEventRepository,
+                                 PaymentService paymentService,
+                                 TransactionTemplate transactionTemplate,
+                                 ObjectMapper objectMapper,
+                                 @Value("${payment.webhook.workers:4}") int workerCount,
+                                 @Value("${payment.webhook.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${payment.webhook.max-attempts:10}") int maxAttempts,
+                                 @Value("${payment.webhook.sweep-batch-size:500}") int sweepBatchSize,
+                                 @Value("${payment.webhook.sweep-grace:PT30S}") Duration sweepGrace,
+                                 @Value("${payment.webhook.retention:P30D}") Duration retention) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.paymentService = paymentService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.maxAttempts = maxAttempts;
+        this.sweepBatchSize = sweepBatchSize;
+        this.sweepGrace = sweepGrace;
+        this.retention = retention;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public void submit(String eventId) {
+        workers.execute(() -> process(eventId));
+    }
+
+    // ---------------- PROCESSING ----------------
+    void process(String eventId) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    webhookEventRepository.lockPending(eventId).ifPresent(event -> {
+                        apply(event);
+                        // an explicit update: order transitions clear the persistence context, detaching event
+                        webhookEventRepository.markProcessed(eventId, LocalDateTime.now());
+                    }));
+        } catch (Exception e) {
+            log.warn("Webhook event {} failed", eventId, e);
+            String error = String.valueOf(e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> webhookEventRepository.recordFailure(eventId,
+                    error.length() > 1000 ? error.substring(0, 1000) : error));
+        }
+    }
+
+    private void apply(WebhookEvent event) {
+        if (!event.getEventType().startsWith(PAYMENT_INTENT_EVENT_PREFIX)) {
+            return; // not subscribed to anything else; stored for the record
+        }
+        JsonNode intent;
+        try {
+            intent = objectMapper.readTree(event.getPayload()).path("data").path("object");
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable payload", e);
+        }
+        String intentId = intent.path("id").asText(null);
+        String intentStatus = intent.path("status").asText(null);
+        if (intentId == null || intentStatus == null) {
+            throw new IllegalStateException("Event has no payment intent id or status");
+        }
+        if (!paymentService.applyWebhookIntentStatus(intentId, intentStatus)) {
+            log.info("Webhook event {} is for unknown payment intent {}", event.getId(), intentId);
+        }
+    }
+
+    // ---------------- SWEEPER ----------------
+    // Rows younger than sweep-grace are left alone: the receiver has just queued them.
+    @Scheduled(fixedDelayString = "${payment.webhook.sweep-interval-ms:5000}")
+    public void sweep() {
+        List<String> pending = webhookEventRepository.findPendingIds(maxAttempts,
+                LocalDateTime.now().minus(sweepGrace), PageRequest.of(0, sweepBatchSize));
+        for (String eventId : pending) {
+            if (workers.getQueue().remainingCapacity() == 0) {
+                break;
+            }
+            submit(eventId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook.purge-interval-ms:3600000}")
+    public void purgeProcessed() {
+        Integer deleted = transactionTemplate.execute(status ->
+                webhookEventRepository.deleteProcessedBefore(LocalDateTime.now().minus(retention)));
+        if (deleted != null && deleted > 0) {
+            log.info("Purged {} processed webhook events", deleted);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // unfinished events stay pending in the table and are swept after the restart
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -1,10 +1,15 @@
 package com.omnistore.repository;
 
 import com.omnistore.entity.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserId(Long userId);
+
+    // cart + items + products in one select, instead of one query per line
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<Cart> findWithItemsByUserId(Long userId);
 }
@@ -1,7 +1,35 @@
 package com.omnistore.repository;
 
+import com.omnistore.dto.OrderItemResponseDto;
 import com.omnistore.entity.OrderItem;
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.search.ProductSales;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    // items for a whole page of orders in one query
+    @Query("select new com.omnistore.dto.OrderItemResponseDto(oi.order.id, p.id, p.name, oi.quantity, oi.price) " +
+            "from OrderItem oi join oi.product p where oi.order.id in :orderIds order by oi.order.id, oi.id")
+    List<OrderItemResponseDto> findSummariesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    // units ordered per product since a point in time, for suggestion popularity
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.omnistore.search.ProductSales(oi.product.id, sum(oi.quantity)) from OrderItem oi " +
+            "where oi.order.createdAt >= :since and oi.order.status <> :excluded group by oi.product.id")
+    Stream<ProductSales> streamUnitsOrderedSince(@Param("since") LocalDateTime since,
+                                                 @Param("excluded") OrderStatus excluded);
 }
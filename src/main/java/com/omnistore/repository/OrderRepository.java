@@ -1,11 +1,56 @@
 package com.omnistore.repository;
 
+import com.omnistore.dto.OrderResponseDto;
 import com.omnistore.entity.Order;
+import com.omnistore.entity.OrderStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
-    List<Order> findByUserId(Long userId);
+    // keyset pages of a user's orders, newest first; (createdAt, id) breaks ties on equal timestamps
+    @Query("select new com.omnistore.dto.OrderResponseDto(o.id, o.userId, o.totalAmount, o.status, o.createdAt) " +
+            "from Order o where o.userId = :userId order by o.createdAt desc, o.id desc")
+    List<OrderResponseDto> findHistoryPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select new com.omnistore.dto.OrderResponseDto(o.id, o.userId, o.totalAmount, o.status, o.createdAt) " +
+            "from Order o where o.userId = :userId " +
+            "and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id)) " +
+            "order by o.createdAt desc, o.id desc")
+    List<OrderResponseDto> findHistoryPageAfter(@Param("userId") Long userId,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
+    // one conditional UPDATE per transition (see OrderStatus.allowedFrom), returns 0 or 1;
+    // clears the persistence context so no stale Order instance outlives the update
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Order o set o.status = :to where o.id = :id and o.status in :from")
+    int transition(@Param("id") Long id, @Param("from") Collection<OrderStatus> from, @Param("to") OrderStatus to);
+
+    // the same move, but only out of one expected status (e.g. cancel only if still unpaid);
+    // the table still decides whether that move exists at all
+    default int transition(Long id, OrderStatus from, OrderStatus to) {
+        if (!from.canTransitionTo(to)) {
+            throw new IllegalArgumentException("Order cannot move from " + from + " to " + to);
+        }
+        return transition(id, EnumSet.of(from), to);
+    }
+
+    // order + items + products in one select, for responses that serialize the whole order
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<Order> findWithItemsById(Long id);
+
+    @Query("select o.status from Order o where o.id = :id")
+    OrderStatus findStatusById(@Param("id") Long id);
 }
@@ -0,0 +1,47 @@
+package com.omnistore.repository;
+
+import com.omnistore.entity.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Only the oldest unpublished event of each order can be claimed, so an order's events go out
+    // one at a time and in sequence, and one that was given up on (attempts at the limit) parks
+    // everything after it. Lock timeout -2 = SKIP LOCKED: several dispatchers (or nodes) claim
+    // disjoint batches; the claim itself is the lease written before the locks are released.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from OutboxEvent e where e.publishedAt is null and e.attempts < :maxAttempts " +
+            "and (e.leasedUntil is null or e.leasedUntil < :now) " +
+            "and not exists (select p.id from OutboxEvent p " +
+            "where p.aggregateId = e.aggregateId and p.publishedAt is null and p.id < e.id) " +
+            "order by e.id")
+    List<OutboxEvent> lockClaimable(@Param("maxAttempts") int maxAttempts,
+                                    @Param("now") LocalDateTime now,
+                                    Pageable pageable);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.publishedAt = :at, e.leasedUntil = null where e.id in :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("at") LocalDateTime at);
+
+    // the event is claimable again right away, unless this was its last attempt
+    @Modifying
+    @Query("update OutboxEvent e set e.attempts = e.attempts + 1, e.leasedUntil = null where e.id in :ids")
+    int recordFailedAttempt(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,13 +1,59 @@
 package com.omnistore.repository;
 
+import com.omnistore.entity.OrderStatus;
 import com.omnistore.entity.Payment;
+import com.omnistore.payment.ReconciliationCandidate;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByOrderIdAndProvider(Long orderId, String provider);
     Optional<Payment> findByStripePaymentIntentId(String stripePaymentIntentId);
+
+    // keyset page over payments.id; a plain read, nothing is locked while the job scans
+    @Query("select new com.omnistore.payment.ReconciliationCandidate(p.id, p.orderId, p.provider, " +
+            "p.stripePaymentIntentId, p.status) " +
+            "from Payment p, Order o where o.id = p.orderId and o.status = :orderStatus " +
+            "and p.createdAt < :createdBefore and p.id > :afterId order by p.id")
+    List<ReconciliationCandidate> findReconciliationPage(@Param("orderStatus") OrderStatus orderStatus,
+                                                         @Param("createdBefore") LocalDateTime createdBefore,
+                                                         @Param("afterId") Long afterId,
+                                                         Pageable pageable);
+
+    // payments of an order that are still open at the provider or went through
+    @Query("select p from Payment p where p.orderId = :orderId and (p.status is null or p.status not in :failed)")
+    List<Payment> findNotFailedByOrderId(@Param("orderId") Long orderId,
+                                         @Param("failed") Collection<String> failed);
+
+    // payments that did not fail on orders that were cancelled anyway: a charge may have landed after
+    // the cancel (or the reservation expired while the customer was still paying). Bounded by
+    // createdAfter, so the scan does not grow with the whole payment history
+    @Query("select new com.omnistore.payment.ReconciliationCandidate(p.id, p.orderId, p.provider, " +
+            "p.stripePaymentIntentId, p.status) " +
+            "from Payment p, Order o where o.id = p.orderId and o.status = com.omnistore.entity.OrderStatus.CANCELLED " +
+            "and (p.status is null or p.status not in :failed) " +
+            "and p.createdAt >= :createdAfter and p.createdAt < :createdBefore and p.id > :afterId order by p.id")
+    List<ReconciliationCandidate> findCancelledOrderPaymentPage(@Param("failed") Collection<String> failed,
+                                                                @Param("createdAfter") LocalDateTime createdAfter,
+                                                                @Param("createdBefore") LocalDateTime createdBefore,
+                                                                @Param("afterId") Long afterId,
+                                                                Pageable pageable);
+
+    // settled payments are left alone, whatever the caller read earlier
+    @Modifying
+    @Query("update Payment p set p.status = :status where p.id in :ids " +
+            "and (p.status is null or p.status not in :settled)")
+    int updateUnsettledStatus(@Param("ids") Collection<Long> ids,
+                              @Param("status") String status,
+                              @Param("settled") Collection<String> settled);
 }
@@ -1,13 +1,41 @@
 package com.omnistore.repository;
 
 import com.omnistore.entity.ProductCategory;
+import com.omnistore.search.CategoryAssignment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductCategoryRepository extends JpaRepository<ProductCategory, Long> {
     List<ProductCategory> findByProductId(Long productId);
     List<ProductCategory> findByCategoryId(Long categoryId);
+
+    @Query("select new com.omnistore.search.CategoryAssignment(pc.product.id, c.id, c.name) " +
+            "from ProductCategory pc join pc.category c where pc.product.id = :productId")
+    List<CategoryAssignment> findAssignmentsByProductId(@Param("productId") Long productId);
+
+    @Query("select new com.omnistore.search.CategoryAssignment(pc.product.id, c.id, c.name) " +
+            "from ProductCategory pc join pc.category c where pc.product.id in :productIds")
+    List<CategoryAssignment> findAssignmentsByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    @Query("select pc.product.id from ProductCategory pc where pc.category.id = :categoryId")
+    List<Long> findProductIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    // ordered like ProductRepository.streamAllSummaries so the two can be merged; consume inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.omnistore.search.CategoryAssignment(pc.product.id, c.id, c.name) " +
+            "from ProductCategory pc join pc.category c order by pc.product.id")
+    Stream<CategoryAssignment> streamAllAssignments();
 }
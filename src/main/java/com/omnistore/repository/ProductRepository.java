@@ -1,7 +1,98 @@
 package com.omnistore.repository;
 
+import com.omnistore.dto.ProductResponseDto;
 import com.omnistore.entity.Product;
+import com.omnistore.search.FacetSource;
+import com.omnistore.search.SuggestionSource;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
-}
\ No newline at end of file
+
+    // keyset pagination on id, selects only the columns ProductResponseDto needs
+    @Query("select new com.omnistore.dto.ProductResponseDto(p.id, p.name, p.description, p.price, p.active, " +
+            "p.ratingSum, p.ratingCount, p.rating1, p.rating2, p.rating3, p.rating4, p.rating5) " +
+            "from Product p order by p.id")
+    List<ProductResponseDto> findSummaryPage(Pageable pageable);
+
+    @Query("select new com.omnistore.dto.ProductResponseDto(p.id, p.name, p.description, p.price, p.active, " +
+            "p.ratingSum, p.ratingCount, p.rating1, p.rating2, p.rating3, p.rating4, p.rating5) " +
+            "from Product p where p.id > :afterId order by p.id")
+    List<ProductResponseDto> findSummaryPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // forward-only cursor for bulk export, must be consumed inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.omnistore.dto.ProductResponseDto(p.id, p.name, p.description, p.price, p.active, " +
+            "p.ratingSum, p.ratingCount, p.rating1, p.rating2, p.rating3, p.rating4, p.rating5) " +
+            "from Product p order by p.id")
+    Stream<ProductResponseDto> streamAllSummaries();
+
+    @Query("select new com.omnistore.dto.ProductResponseDto(p.id, p.name, p.description, p.price, p.active, " +
+            "p.ratingSum, p.ratingCount, p.rating1, p.rating2, p.rating3, p.rating4, p.rating5) " +
+            "from Product p where p.id in :ids")
+    List<ProductResponseDto> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+    // name and popularity only, for the suggestion build
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.omnistore.search.SuggestionSource(p.id, p.name, p.active, p.ratingCount) " +
+            "from Product p order by p.id")
+    Stream<SuggestionSource> streamSuggestionSources();
+
+    // price, stock and rating columns only, for the browse facet bitmaps
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.omnistore.search.FacetSource(p.id, p.price, p.active, p.stock, p.ratingSum, p.ratingCount) " +
+            "from Product p order by p.id")
+    Stream<FacetSource> streamFacetSources();
+
+    @Query("select new com.omnistore.search.FacetSource(p.id, p.price, p.active, p.stock, p.ratingSum, p.ratingCount) " +
+            "from Product p where p.id in :ids")
+    List<FacetSource> findFacetSourcesByIds(@Param("ids") Collection<Long> ids);
+
+    // One statement per review, so sum, count and histogram bucket move together and concurrent
+    // reviews of the same product never lose an update. Does not bump @Version: a review must not
+    // fail a concurrent stock update.
+    @Modifying
+    @Query("update Product p set p.ratingSum = p.ratingSum + :rating, p.ratingCount = p.ratingCount + 1, " +
+            "p.rating1 = p.rating1 + case when :rating = 1 then 1 else 0 end, " +
+            "p.rating2 = p.rating2 + case when :rating = 2 then 1 else 0 end, " +
+            "p.rating3 = p.rating3 + case when :rating = 3 then 1 else 0 end, " +
+            "p.rating4 = p.rating4 + case when :rating = 4 then 1 else 0 end, " +
+            "p.rating5 = p.rating5 + case when :rating = 5 then 1 else 0 end " +
+            "where p.id = :productId")
+    int incrementRating(@Param("productId") Long productId, @Param("rating") int rating);
+
+    // Recomputes the aggregates of products in (afterId, upToId] from product_reviews
+    @Modifying
+    @Query(value = "update products p set " +
+            "rating_sum = coalesce((select sum(r.rating) from product_reviews r where r.product_id = p.id), 0), " +
+            "rating_count = (select count(*) from product_reviews r where r.product_id = p.id), " +
+            "rating_1 = (select count(*) from product_reviews r where r.product_id = p.id and r.rating = 1), " +
+            "rating_2 = (select count(*) from product_reviews r where r.product_id = p.id and r.rating = 2), " +
+            "rating_3 = (select count(*) from product_reviews r where r.product_id = p.id and r.rating = 3), " +
+            "rating_4 = (select count(*) from product_reviews r where r.product_id = p.id and r.rating = 4), " +
+            "rating_5 = (select count(*) from product_reviews r where r.product_id = p.id and r.rating = 5) " +
+            "where p.id > :afterId and p.id <= :upToId", nativeQuery = true)
+    int rebuildRatings(@Param("afterId") Long afterId, @Param("upToId") Long upToId);
+
+    @Query("select max(p.id) from Product p")
+    Long findMaxId();
+}
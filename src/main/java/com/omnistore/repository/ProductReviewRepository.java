@@ -1,12 +1,48 @@
 package com.omnistore.repository;
 
+import com.omnistore.dto.ReviewResponseDto;
 import com.omnistore.entity.ProductReview;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ProductReviewRepository extends JpaRepository<ProductReview, Long> {
-    List<ProductReview> findByProductId(Long productId);
+
+    // keyset pages of a product's reviews; only the author's id and email are read from users
+
+    // newest first, (createdAt, id) breaks ties on equal timestamps
+    @Query("select new com.omnistore.dto.ReviewResponseDto(r.id, u.id, u.email, r.rating, r.comment, r.createdAt) " +
+            "from ProductReview r join r.user u where r.product.id = :productId " +
+            "order by r.createdAt desc, r.id desc")
+    List<ReviewResponseDto> findNewestPage(@Param("productId") Long productId, Pageable pageable);
+
+    @Query("select new com.omnistore.dto.ReviewResponseDto(r.id, u.id, u.email, r.rating, r.comment, r.createdAt) " +
+            "from ProductReview r join r.user u where r.product.id = :productId " +
+            "and (r.createdAt < :createdAt or (r.createdAt = :createdAt and r.id < :id)) " +
+            "order by r.createdAt desc, r.id desc")
+    List<ReviewResponseDto> findNewestPageAfter(@Param("productId") Long productId,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
+    // highest rating first, later reviews first within a rating
+    @Query("select new com.omnistore.dto.ReviewResponseDto(r.id, u.id, u.email, r.rating, r.comment, r.createdAt) " +
+            "from ProductReview r join r.user u where r.product.id = :productId " +
+            "order by r.rating desc, r.id desc")
+    List<ReviewResponseDto> findTopRatedPage(@Param("productId") Long productId, Pageable pageable);
+
+    @Query("select new com.omnistore.dto.ReviewResponseDto(r.id, u.id, u.email, r.rating, r.comment, r.createdAt) " +
+            "from ProductReview r join r.user u where r.product.id = :productId " +
+            "and (r.rating < :rating or (r.rating = :rating and r.id < :id)) " +
+            "order by r.rating desc, r.id desc")
+    List<ReviewResponseDto> findTopRatedPageAfter(@Param("productId") Long productId,
+                                                  @Param("rating") Integer rating,
+                                                  @Param("id") Long id,
+                                                  Pageable pageable);
 }
@@ -1,6 +1,7 @@
 package com.omnistore.repository;
 
 import com.omnistore.entity.Shipment;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,6 +9,12 @@ import java.util.Optional;
 
 @Repository
 public interface ShipmentRepository extends JpaRepository<Shipment, Long> {
+    // shipments are returned with their order and its items, loaded up front
+    @EntityGraph(attributePaths = {"order", "order.items", "order.items.product"})
     Optional<Shipment> findByOrderId(Long orderId);
+
+    @EntityGraph(attributePaths = {"order", "order.items", "order.items.product"})
+    Optional<Shipment> findWithOrderById(Long id);
+
     Optional<Shipment> findByTrackingNumber(String trackingNumber);
 }
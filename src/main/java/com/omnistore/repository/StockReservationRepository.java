@@ -0,0 +1,41 @@
+package com.omnistore.repository;
+
+import com.omnistore.entity.ReservationStatus;
+import com.omnistore.entity.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // locks the order's reservation rows (not the product rows) so a release only runs once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from StockReservation r where r.orderId = :orderId and r.status in :statuses")
+    List<StockReservation> lockByOrderIdAndStatusIn(@Param("orderId") Long orderId,
+                                                    @Param("statuses") Collection<ReservationStatus> statuses);
+
+    @Modifying
+    @Query("update StockReservation r set r.status = :to where r.orderId = :orderId and r.status = :from")
+    int updateStatusByOrderId(@Param("orderId") Long orderId,
+                              @Param("from") ReservationStatus from,
+                              @Param("to") ReservationStatus to);
+
+    @Modifying
+    @Query("update StockReservation r set r.expiresAt = :expiresAt where r.orderId = :orderId and r.status = :status")
+    int extendExpiry(@Param("orderId") Long orderId,
+                     @Param("status") ReservationStatus status,
+                     @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Query("select distinct r.orderId from StockReservation r where r.status = :status and r.expiresAt < :now")
+    List<Long> findOrderIdsExpiredBefore(@Param("status") ReservationStatus status,
+                                         @Param("now") LocalDateTime now,
+                                         Pageable pageable);
+}
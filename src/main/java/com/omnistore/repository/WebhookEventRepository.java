@@ -0,0 +1,43 @@
+package com.omnistore.repository;
+
+import com.omnistore.entity.WebhookEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, String> {
+
+    // lock timeout -2 = SKIP LOCKED: empty when the event is done or another worker (or node) has it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from WebhookEvent e where e.id = :id and e.processedAt is null")
+    Optional<WebhookEvent> lockPending(@Param("id") String id);
+
+    @Query("select e.id from WebhookEvent e where e.processedAt is null and e.attempts < :maxAttempts "
+            + "and e.receivedAt < :receivedBefore order by e.receivedAt")
+    List<String> findPendingIds(@Param("maxAttempts") int maxAttempts,
+                                @Param("receivedBefore") LocalDateTime receivedBefore,
+                                Pageable pageable);
+
+    @Modifying
+    @Query("update WebhookEvent e set e.processedAt = :at where e.id = :id")
+    int markProcessed(@Param("id") String id, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Query("update WebhookEvent e set e.attempts = e.attempts + 1, e.lastError = :error where e.id = :id")
+    int recordFailure(@Param("id") String id, @Param("error") String error);
+
+    @Modifying
+    @Query("delete from WebhookEvent e where e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,9 @@
+package com.omnistore.search;
+
+import java.util.List;
+
+// Products in every one of categoryIds, in price buckets [fromPriceBucket, toPriceBucket) when given,
+// rated minRating stars or more when given; ids after afterId, limit of them
+public record BrowseQuery(List<Long> categoryIds, Integer fromPriceBucket, Integer toPriceBucket,
+                          Integer minRating, boolean inStockOnly, int afterId, int limit) {
+}
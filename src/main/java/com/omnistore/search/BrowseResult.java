@@ -0,0 +1,8 @@
+package com.omnistore.search;
+
+import java.util.List;
+
+// One page of product ids, ascending, plus counts over all hits: per price bucket, per rating bucket, in stock
+public record BrowseResult(List<Long> productIds, boolean hasMore, int totalHits,
+                           int[] priceCounts, int[] ratingCounts, int inStockCount) {
+}
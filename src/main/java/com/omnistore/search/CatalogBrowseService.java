@@ -0,0 +1,253 @@
+package com.omnistore.search;
+
+import com.omnistore.dto.FacetCountDto;
+import com.omnistore.dto.ProductBrowseResponseDto;
+import com.omnistore.dto.ProductResponseDto;
+import com.omnistore.exception.BadRequestException;
+import com.omnistore.repository.ProductCategoryRepository;
+import com.omnistore.repository.ProductRepository;
+import com.omnistore.services.ProductService;
+import com.omnistore.util.CursorCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Category browsing with facet counts, served from a {@link CatalogFacetIndex}.
+ *
+ * The index is built after startup from one streaming scan, like ProductSearchService's, and
+ * swapped in whole. Product writes and category updates are applied to it once they commit.
+ * Stock moves on every checkout, so stock events only queue the product ids; a scheduled pass
+ * re-reads their stock in batches, and the in-stock facet trails checkouts by up to that interval.
+ */
+@Service
+public class CatalogBrowseService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogBrowseService.class);
+
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_CATEGORY_FILTERS = 10;
+    private static final int STOCK_BATCH_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final ProductCategoryRepository productCategoryRepository;
+    private final ProductService productService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private volatile CatalogFacetIndex index = new CatalogFacetIndex();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final Set<Long> productsChangedDuringBuild = ConcurrentHashMap.newKeySet();
+    private final Set<Long> categoriesChangedDuringBuild = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingStock = ConcurrentHashMap.newKeySet();
+
+    public CatalogBrowseService(ProductRepository productRepository,
+                                ProductCategoryRepository productCategoryRepository,
+                                ProductService productService,
+                                PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.productCategoryRepository = productCategoryRepository;
+        this.productService = productService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // ---------------- BROWSE ----------------
+    // Products in all of the given categories (none: the whole catalog), ordered by id. Price limits
+    // have to be bucket edges, so a range is a set of whole buckets.
+    public ProductBrowseResponseDto browse(List<Long> categoryIds, Double minPrice, Double maxPrice, Integer minRating,
+                                           boolean inStock, String cursor, int size) {
+        List<Long> categories = categoryIds == null ? List.of() : categoryIds;
+        if (categories.size() > MAX_CATEGORY_FILTERS) {
+            throw new BadRequestException("At most " + MAX_CATEGORY_FILTERS + " categories can be combined");
+        }
+        if (minRating != null && (minRating < 1 || minRating > CatalogFacetIndex.RATING_BUCKETS)) {
+            throw new BadRequestException("Minimum rating must be between 1 and " + CatalogFacetIndex.RATING_BUCKETS);
+        }
+        Integer fromBucket = null;
+        Integer toBucket = null;
+        if (minPrice != null || maxPrice != null) {
+            fromBucket = minPrice == null ? 0 : priceEdge(minPrice);
+            toBucket = maxPrice == null ? CatalogFacetIndex.PRICE_EDGES.length : priceEdge(maxPrice);
+            if (fromBucket >= toBucket) {
+                throw new BadRequestException("Minimum price must be below maximum price");
+            }
+        }
+        int afterId = -1;
+        if (cursor != null && !cursor.isBlank()) {
+            long decoded = CursorCodec.decodeLong(cursor);
+            if (decoded < 0 || decoded > Integer.MAX_VALUE) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            afterId = (int) decoded;
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        BrowseResult result = index.browse(new BrowseQuery(categories, fromBucket, toBucket, minRating, inStock,
+                afterId, pageSize));
+
+        List<ProductResponseDto> items = productService.getProductSummaries(result.productIds());
+        String nextCursor = result.hasMore()
+                ? CursorCodec.encode(result.productIds().get(result.productIds().size() - 1)) : null;
+        return new ProductBrowseResponseDto(items, nextCursor, result.totalHits(),
+                priceFacets(result.priceCounts()), ratingFacets(result.ratingCounts()), result.inStockCount());
+    }
+
+    private static int priceEdge(double price) {
+        int edge = Arrays.binarySearch(CatalogFacetIndex.PRICE_EDGES, price);
+        if (edge < 0) {
+            throw new BadRequestException("Price limits must be one of " + Arrays.toString(CatalogFacetIndex.PRICE_EDGES));
+        }
+        return edge;
+    }
+
+    // "0-10", "10-25", ... "500+"
+    private static List<FacetCountDto> priceFacets(int[] counts) {
+        double[] edges = CatalogFacetIndex.PRICE_EDGES;
+        List<FacetCountDto> facets = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            String label = i + 1 < edges.length
+                    ? (long) edges[i] + "-" + (long) edges[i + 1]
+                    : (long) edges[i] + "+";
+            facets.add(new FacetCountDto(label, counts[i]));
+        }
+        return facets;
+    }
+
+    // cumulative, best first: "5+", "4+", ... "1+", matching the minRating filter
+    private static List<FacetCountDto> ratingFacets(int[] counts) {
+        List<FacetCountDto> facets = new ArrayList<>(counts.length);
+        int atLeast = 0;
+        for (int i = counts.length - 1; i >= 0; i--) {
+            atLeast += counts[i];
+            facets.add(new FacetCountDto((i + 1) + "+", atLeast));
+        }
+        return facets;
+    }
+
+    // ---------------- INDEX MAINTENANCE ----------------
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("browse-index-build").start(this::rebuild);
+    }
+
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            CatalogFacetIndex fresh = new CatalogFacetIndex();
+            readOnlyTransaction.executeWithoutResult(status -> scanInto(fresh));
+            index = fresh;
+
+            // changes the scan may have missed; stock is left to the next refresh, which waits for the swap
+            List<Long> products = new ArrayList<>(productsChangedDuringBuild);
+            productsChangedDuringBuild.removeAll(products);
+            products.forEach(this::reindex);
+            List<Long> categories = new ArrayList<>(categoriesChangedDuringBuild);
+            categoriesChangedDuringBuild.removeAll(categories);
+            categories.forEach(this::reindexCategory);
+
+            log.info("Browse index built: {} products in {} ms", fresh.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            log.error("Browse index build failed, keeping the current index", e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private void scanInto(CatalogFacetIndex target) {
+        try (Stream<FacetSource> products = productRepository.streamFacetSources();
+             Stream<CategoryAssignment> assignments = productCategoryRepository.streamAllAssignments()) {
+            ProductCategoryMerge.forEach(products, FacetSource::productId, assignments, (product, categories) ->
+                    target.upsert(product, categories.stream().map(CategoryAssignment::categoryId).toList()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (building.get()) {
+            productsChangedDuringBuild.add(event.productId());
+        }
+        reindex(event.productId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (building.get()) {
+            categoriesChangedDuringBuild.add(event.categoryId());
+        }
+        reindexCategory(event.categoryId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        pendingStock.addAll(event.productIds());
+    }
+
+    @Scheduled(fixedDelayString = "${browse.stock-refresh-ms:1000}")
+    public void refreshStock() {
+        if (pendingStock.isEmpty() || building.get()) {
+            return;
+        }
+        List<Long> productIds = new ArrayList<>(pendingStock);
+        pendingStock.removeAll(productIds);
+        CatalogFacetIndex current = index;
+        for (int from = 0; from < productIds.size(); from += STOCK_BATCH_SIZE) {
+            List<Long> batch = productIds.subList(from, Math.min(productIds.size(), from + STOCK_BATCH_SIZE));
+            try {
+                for (FacetSource product : productRepository.findFacetSourcesByIds(batch)) {
+                    current.updateStock(product.productId(), product.stock() == null ? 0 : product.stock());
+                }
+            } catch (RuntimeException e) {
+                // queued again for the next pass
+                pendingStock.addAll(batch);
+                log.warn("Could not refresh stock of {} products", batch.size(), e);
+            }
+        }
+        // a build that started meanwhile may have read the old levels
+        if (building.get()) {
+            pendingStock.addAll(productIds);
+        }
+    }
+
+    private void reindex(Long productId) {
+        try {
+            List<FacetSource> found = productRepository.findFacetSourcesByIds(List.of(productId));
+            if (found.isEmpty()) {
+                index.remove(productId);
+                return;
+            }
+            List<Long> categories = productCategoryRepository.findAssignmentsByProductId(productId).stream()
+                    .map(CategoryAssignment::categoryId)
+                    .toList();
+            index.upsert(found.get(0), categories);
+        } catch (RuntimeException e) {
+            log.warn("Could not re-index product {} for browsing", productId, e);
+        }
+    }
+
+    private void reindexCategory(Long categoryId) {
+        try {
+            index.replaceCategory(categoryId, productCategoryRepository.findProductIdsByCategoryId(categoryId));
+        } catch (RuntimeException e) {
+            log.warn("Could not re-index category {} for browsing", categoryId, e);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.omnistore.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bitmaps of product ids per category and per facet value, for category browsing.
+ *
+ * Only active products are indexed. Each facet value (price bucket, rating bucket, in stock)
+ * and each category has an {@link IdBitmap} of its products, so "in A and B, in stock, under
+ * $50" is a few bitmap intersections, and a facet count is one intersection cardinality.
+ * Price and rating buckets are disjoint: a range is the OR of the buckets inside it.
+ *
+ * Browsing shares a read lock; updates take the write lock.
+ */
+public class CatalogFacetIndex {
+
+    // bucket i holds prices in [PRICE_EDGES[i], PRICE_EDGES[i + 1]), the last one is open-ended
+    static final double[] PRICE_EDGES = {0, 10, 25, 50, 100, 250, 500};
+    // bucket i holds products whose average rating rounds down to i + 1 stars
+    static final int RATING_BUCKETS = 5;
+
+    // never written to; stands in for unknown categories and empty unions
+    private static final IdBitmap EMPTY = new IdBitmap();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IdBitmap all = new IdBitmap();
+    private final IdBitmap inStock = new IdBitmap();
+    private final IdBitmap[] priceBuckets = new IdBitmap[PRICE_EDGES.length];
+    private final IdBitmap[] ratingBuckets = new IdBitmap[RATING_BUCKETS];
+    private final Map<Long, IdBitmap> categories = new HashMap<>();
+
+    public CatalogFacetIndex() {
+        for (int i = 0; i < priceBuckets.length; i++) {
+            priceBuckets[i] = new IdBitmap();
+        }
+        for (int i = 0; i < ratingBuckets.length; i++) {
+            ratingBuckets[i] = new IdBitmap();
+        }
+    }
+
+    // ---------------- WRITES ----------------
+    public void upsert(FacetSource product, Collection<Long> categoryIds) {
+        int id = toId(product.productId());
+        lock.writeLock().lock();
+        try {
+            delete(id);
+            if (Boolean.FALSE.equals(product.active())) {
+                return;
+            }
+            all.add(id);
+            if (product.stock() != null && product.stock() > 0) {
+                inStock.add(id);
+            }
+            if (product.price() != null) {
+                priceBuckets[priceBucket(product.price())].add(id);
+            }
+            if (product.ratingCount() != null && product.ratingCount() > 0) {
+                ratingBuckets[ratingBucket(product.ratingSum(), product.ratingCount())].add(id);
+            }
+            for (Long categoryId : categoryIds) {
+                categories.computeIfAbsent(categoryId, c -> new IdBitmap()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            delete(toId(productId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // stock moves far more often than anything else, so it has its own update
+    public void updateStock(Long productId, int stock) {
+        int id = toId(productId);
+        lock.writeLock().lock();
+        try {
+            if (!all.contains(id)) {
+                return;
+            }
+            if (stock > 0) {
+                inStock.add(id);
+            } else {
+                inStock.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the category's products as they are now; none drops the category
+    public void replaceCategory(Long categoryId, Collection<Long> productIds) {
+        lock.writeLock().lock();
+        try {
+            IdBitmap members = new IdBitmap();
+            for (Long productId : productIds) {
+                int id = toId(productId);
+                if (all.contains(id)) {
+                    members.add(id);
+                }
+            }
+            if (members.isEmpty()) {
+                categories.remove(categoryId);
+            } else {
+                categories.put(categoryId, members);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return all.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void delete(int id) {
+        if (!all.contains(id)) {
+            return;
+        }
+        all.remove(id);
+        inStock.remove(id);
+        for (IdBitmap bucket : priceBuckets) {
+            bucket.remove(id);
+        }
+        for (IdBitmap bucket : ratingBuckets) {
+            bucket.remove(id);
+        }
+        for (Iterator<IdBitmap> it = categories.values().iterator(); it.hasNext(); ) {
+            IdBitmap members = it.next();
+            members.remove(id);
+            if (members.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    // ---------------- BROWSE ----------------
+    // Each facet is counted with every filter applied except its own, so choosing a price bucket
+    // still shows how many products the other buckets would have.
+    public BrowseResult browse(BrowseQuery query) {
+        lock.readLock().lock();
+        try {
+            // category bitmaps only hold active products, so all is just the no-category case
+            IdBitmap base = query.categoryIds().isEmpty() ? all : null;
+            for (Long categoryId : query.categoryIds()) {
+                IdBitmap members = categories.getOrDefault(categoryId, EMPTY);
+                base = base == null ? members : IdBitmap.and(base, members);
+            }
+
+            // ranges are narrowed bucket by bucket against the small base, never ORed catalog-wide
+            Integer minRatingBucket = query.minRating() != null ? query.minRating() - 1 : null;
+            IdBitmap stocked = query.inStockOnly() ? IdBitmap.and(base, inStock) : base;
+
+            IdBitmap withoutPrice = withinBuckets(stocked, ratingBuckets, minRatingBucket, RATING_BUCKETS);
+            int[] priceCounts = new int[priceBuckets.length];
+            for (int i = 0; i < priceBuckets.length; i++) {
+                priceCounts[i] = IdBitmap.andCardinality(withoutPrice, priceBuckets[i]);
+            }
+
+            IdBitmap withoutRating = withinBuckets(stocked, priceBuckets, query.fromPriceBucket(), query.toPriceBucket());
+            int[] ratingCounts = new int[RATING_BUCKETS];
+            for (int i = 0; i < RATING_BUCKETS; i++) {
+                ratingCounts[i] = IdBitmap.andCardinality(withoutRating, ratingBuckets[i]);
+            }
+
+            IdBitmap withoutStock = withinBuckets(
+                    withinBuckets(base, priceBuckets, query.fromPriceBucket(), query.toPriceBucket()),
+                    ratingBuckets, minRatingBucket, RATING_BUCKETS);
+            int inStockCount = IdBitmap.andCardinality(withoutStock, inStock);
+
+            IdBitmap hits = query.inStockOnly() ? IdBitmap.and(withoutStock, inStock) : withoutStock;
+            // one extra id tells whether another page exists
+            int[] page = hits.idsAfter(query.afterId(), query.limit() + 1);
+            List<Long> productIds = new ArrayList<>(Math.min(page.length, query.limit()));
+            for (int i = 0; i < page.length && i < query.limit(); i++) {
+                productIds.add((long) page[i]);
+            }
+            return new BrowseResult(productIds, page.length > query.limit(), hits.cardinality(),
+                    priceCounts, ratingCounts, inStockCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // set restricted to buckets [from, to); no lower bound means no filter
+    private static IdBitmap withinBuckets(IdBitmap set, IdBitmap[] buckets, Integer from, Integer to) {
+        if (from == null) {
+            return set;
+        }
+        IdBitmap result = EMPTY;
+        for (int i = from; i < to; i++) {
+            result = IdBitmap.or(result, IdBitmap.and(set, buckets[i]));
+        }
+        return result;
+    }
+
+    static int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket + 1 < PRICE_EDGES.length && price >= PRICE_EDGES[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    static int ratingBucket(Long ratingSum, int ratingCount) {
+        int stars = (int) ((ratingSum == null ? 0 : ratingSum) / ratingCount);
+        return Math.max(1, Math.min(RATING_BUCKETS, stars)) - 1;
+    }
+
+    // product ids come from an identity column and stay far below this
+    private static int toId(Long productId) {
+        if (productId == null || productId < 0 || productId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Product id out of bitmap range: " + productId);
+        }
+        return productId.intValue();
+    }
+}
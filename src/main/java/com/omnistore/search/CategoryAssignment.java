@@ -0,0 +1,5 @@
+package com.omnistore.search;
+
+// One product_categories row with the category name, read by the JPQL projections in ProductCategoryRepository
+public record CategoryAssignment(Long productId, Long categoryId, String categoryName) {
+}
@@ -0,0 +1,5 @@
+package com.omnistore.search;
+
+// Published when a category is renamed or deleted; every product filed under it is re-indexed
+public record CategoryChangedEvent(Long categoryId) {
+}
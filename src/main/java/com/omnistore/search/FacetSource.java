@@ -0,0 +1,6 @@
+package com.omnistore.search;
+
+// The columns of a product the facet bitmaps are built from, read by the ProductRepository facet queries
+public record FacetSource(Long productId, Double price, Boolean active, Integer stock,
+                          Long ratingSum, Integer ratingCount) {
+}
@@ -0,0 +1,382 @@
+package com.omnistore.search;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints (product ids), laid out like a Roaring bitmap.
+ *
+ * Ids are split by their high 16 bits into chunks. A chunk is a sorted char array while it holds
+ * up to {@link #ARRAY_MAX} ids and a 65536-bit bitmap above that, so a chunk never takes more
+ * than 8 KB and a sparse set costs about two bytes per id. Intersections work chunk by chunk and
+ * pick the loop for the two container kinds: merge for two arrays, bit tests for an array against
+ * a bitmap, word ANDs for two bitmaps.
+ *
+ * The run-length containers of the full format are left out: product ids are handed out densely,
+ * and dense chunks are already bitmaps. Not thread-safe, {@link CatalogFacetIndex} locks around it.
+ */
+public final class IdBitmap {
+
+    static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4]; // char[] or long[], matching counts[i]
+    private int[] counts = new int[4];
+    private int size;
+
+    // ---------------- SINGLE IDS ----------------
+    public boolean contains(int id) {
+        int i = indexOf((char) (id >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) id;
+        return containers[i] instanceof long[] words
+                ? (words[low >>> 6] & (1L << low)) != 0
+                : Arrays.binarySearch((char[]) containers[i], 0, counts[i], low) >= 0;
+    }
+
+    public void add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id: " + id);
+        }
+        char high = (char) (id >>> 16);
+        char low = (char) id;
+        int i = indexOf(high);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk(i, high, new char[4], 0);
+        }
+
+        if (containers[i] instanceof long[] words) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                counts[i]++;
+            }
+            return;
+        }
+        char[] values = (char[]) containers[i];
+        int at = Arrays.binarySearch(values, 0, counts[i], low);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        if (counts[i] == ARRAY_MAX) {
+            long[] words = toWords(values, counts[i]);
+            words[low >>> 6] |= 1L << low;
+            containers[i] = words;
+            counts[i]++;
+            return;
+        }
+        if (counts[i] == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+            containers[i] = values;
+        }
+        System.arraycopy(values, at, values, at + 1, counts[i] - at);
+        values[at] = low;
+        counts[i]++;
+    }
+
+    public void remove(int id) {
+        int i = indexOf((char) (id >>> 16));
+        if (i < 0) {
+            return;
+        }
+        char low = (char) id;
+        if (containers[i] instanceof long[] words) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return;
+            }
+            words[low >>> 6] &= ~bit;
+            if (--counts[i] == ARRAY_MAX) {
+                containers[i] = toValues(words, ARRAY_MAX);
+            }
+            return;
+        }
+        char[] values = (char[]) containers[i];
+        int at = Arrays.binarySearch(values, 0, counts[i], low);
+        if (at < 0) {
+            return;
+        }
+        System.arraycopy(values, at + 1, values, at, counts[i] - at - 1);
+        if (--counts[i] == 0) {
+            removeChunk(i);
+        }
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Up to limit ids above afterId, ascending; how keyset pages are cut from a result
+    public int[] idsAfter(int afterId, int limit) {
+        int[] ids = new int[Math.min(limit, cardinality())];
+        int found = 0;
+        int from = afterId + 1;
+        int i = indexOf((char) (from >>> 16));
+        if (i < 0) {
+            i = -i - 1;
+            from = 0;
+        }
+        for (; i < size && found < ids.length; i++, from = 0) {
+            int base = keys[i] << 16;
+            char fromLow = (char) from;
+            if (containers[i] instanceof long[] words) {
+                for (int w = fromLow >>> 6; w < WORDS && found < ids.length; w++) {
+                    long word = words[w];
+                    if (w == fromLow >>> 6) {
+                        word &= -1L << fromLow;
+                    }
+                    while (word != 0 && found < ids.length) {
+                        ids[found++] = base | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) containers[i];
+                int at = Arrays.binarySearch(values, 0, counts[i], fromLow);
+                for (int v = at >= 0 ? at : -at - 1; v < counts[i] && found < ids.length; v++) {
+                    ids[found++] = base | values[v];
+                }
+            }
+        }
+        return Arrays.copyOf(ids, found);
+    }
+
+    // ---------------- SET OPERATIONS ----------------
+    public static IdBitmap and(IdBitmap a, IdBitmap b) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Object chunk = andChunk(a.containers[i], a.counts[i], b.containers[j], b.counts[j]);
+                int count = chunk instanceof long[] words ? bitCount(words) : ((char[]) chunk).length;
+                if (count > 0) {
+                    result.appendChunk(a.keys[i], chunk instanceof long[] words && count <= ARRAY_MAX
+                            ? toValues(words, count) : chunk, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // |a AND b| without building the intersection, which is all a facet count needs
+    public static int andCardinality(IdBitmap a, IdBitmap b) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                total += andChunkCardinality(a.containers[i], a.counts[i], b.containers[j], b.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    public static IdBitmap or(IdBitmap a, IdBitmap b) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j >= b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], copyChunk(a.containers[i], a.counts[i]), a.counts[i]);
+                i++;
+            } else if (i >= a.size || a.keys[i] > b.keys[j]) {
+                result.appendChunk(b.keys[j], copyChunk(b.containers[j], b.counts[j]), b.counts[j]);
+                j++;
+            } else {
+                long[] words = new long[WORDS];
+                setAll(words, a.containers[i], a.counts[i]);
+                setAll(words, b.containers[j], b.counts[j]);
+                int count = bitCount(words);
+                result.appendChunk(a.keys[i], count <= ARRAY_MAX ? toValues(words, count) : words, count);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // ---------------- CHUNKS ----------------
+    private static Object andChunk(Object a, int countA, Object b, int countB) {
+        if (a instanceof long[] wordsA && b instanceof long[] wordsB) {
+            long[] words = new long[WORDS];
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = wordsA[w] & wordsB[w];
+            }
+            return words;
+        }
+        if (a instanceof long[] words) {
+            return filter((char[]) b, countB, words);
+        }
+        if (b instanceof long[] words) {
+            return filter((char[]) a, countA, words);
+        }
+        char[] valuesA = (char[]) a;
+        char[] valuesB = (char[]) b;
+        char[] out = new char[Math.min(countA, countB)];
+        int found = 0;
+        for (int i = 0, j = 0; i < countA && j < countB; ) {
+            if (valuesA[i] < valuesB[j]) {
+                i++;
+            } else if (valuesA[i] > valuesB[j]) {
+                j++;
+            } else {
+                out[found++] = valuesA[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, found);
+    }
+
+    private static int andChunkCardinality(Object a, int countA, Object b, int countB) {
+        if (a instanceof long[] wordsA && b instanceof long[] wordsB) {
+            int total = 0;
+            for (int w = 0; w < WORDS; w++) {
+                total += Long.bitCount(wordsA[w] & wordsB[w]);
+            }
+            return total;
+        }
+        if (a instanceof long[] words) {
+            return countIn((char[]) b, countB, words);
+        }
+        if (b instanceof long[] words) {
+            return countIn((char[]) a, countA, words);
+        }
+        char[] valuesA = (char[]) a;
+        char[] valuesB = (char[]) b;
+        int total = 0;
+        for (int i = 0, j = 0; i < countA && j < countB; ) {
+            if (valuesA[i] < valuesB[j]) {
+                i++;
+            } else if (valuesA[i] > valuesB[j]) {
+                j++;
+            } else {
+                total++;
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    private static char[] filter(char[] values, int count, long[] words) {
+        char[] out = new char[count];
+        int found = 0;
+        for (int v = 0; v < count; v++) {
+            char low = values[v];
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                out[found++] = low;
+            }
+        }
+        return Arrays.copyOf(out, found);
+    }
+
+    private static int countIn(char[] values, int count, long[] words) {
+        int total = 0;
+        for (int v = 0; v < count; v++) {
+            char low = values[v];
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    private static void setAll(long[] words, Object chunk, int count) {
+        if (chunk instanceof long[] other) {
+            for (int w = 0; w < WORDS; w++) {
+                words[w] |= other[w];
+            }
+            return;
+        }
+        char[] values = (char[]) chunk;
+        for (int v = 0; v < count; v++) {
+            words[values[v] >>> 6] |= 1L << values[v];
+        }
+    }
+
+    private static Object copyChunk(Object chunk, int count) {
+        return chunk instanceof long[] words ? words.clone() : Arrays.copyOf((char[]) chunk, count);
+    }
+
+    private static long[] toWords(char[] values, int count) {
+        long[] words = new long[WORDS];
+        setAll(words, values, count);
+        return words;
+    }
+
+    private static char[] toValues(long[] words, int count) {
+        char[] values = new char[count];
+        int found = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                values[found++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return values;
+    }
+
+    private static int bitCount(long[] words) {
+        int total = 0;
+        for (long word : words) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    // chunks produced in key order by the set operations
+    private void appendChunk(char high, Object chunk, int count) {
+        insertChunk(size, high, chunk, count);
+    }
+
+    private void insertChunk(int at, char high, Object chunk, int count) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        System.arraycopy(counts, at, counts, at + 1, size - at);
+        keys[at] = high;
+        containers[at] = chunk;
+        counts[at] = count;
+        size++;
+    }
+
+    private void removeChunk(int at) {
+        System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+        System.arraycopy(containers, at + 1, containers, at, size - at - 1);
+        System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+        containers[--size] = null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.omnistore.search;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Joins a product stream with ProductCategoryRepository.streamAllAssignments() for the index
+ * builds. Both are ordered by product id, so each product gets its category rows in one pass
+ * over the two streams, without holding all assignments in memory.
+ */
+final class ProductCategoryMerge {
+
+    private ProductCategoryMerge() {
+    }
+
+    static <P> void forEach(Stream<P> products, ToLongFunction<P> productId, Stream<CategoryAssignment> assignments,
+                            BiConsumer<P, List<CategoryAssignment>> action) {
+        Iterator<CategoryAssignment> categoryRows = assignments.iterator();
+        CategoryAssignment pending = categoryRows.hasNext() ? categoryRows.next() : null;
+
+        for (Iterator<P> it = products.iterator(); it.hasNext(); ) {
+            P product = it.next();
+            long id = productId.applyAsLong(product);
+            List<CategoryAssignment> categories = new ArrayList<>();
+            // rows of products missing from the product stream are skipped
+            while (pending != null && pending.productId() <= id) {
+                if (pending.productId() == id) {
+                    categories.add(pending);
+                }
+                pending = categoryRows.hasNext() ? categoryRows.next() : null;
+            }
+            action.accept(product, categories);
+        }
+    }
+}
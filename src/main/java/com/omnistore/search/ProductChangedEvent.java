@@ -0,0 +1,5 @@
+package com.omnistore.search;
+
+// Published by product and stock writes; in-process indexes re-read the product once the write commits
+public record ProductChangedEvent(Long productId) {
+}
@@ -0,0 +1,5 @@
+package com.omnistore.search;
+
+// Units of one product ordered in the popularity window, read by OrderItemRepository.streamUnitsOrderedSince
+public record ProductSales(Long productId, Long units) {
+}
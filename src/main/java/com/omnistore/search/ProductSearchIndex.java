@@ -0,0 +1,544 @@
+package com.omnistore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product name, category names and description, ranked with BM25.
+ *
+ * The three fields are folded into one BM25 field with weighted term frequencies: a term in the
+ * name counts three times, in a category name twice, in the description once. Every query term
+ * must match (AND); the last one also matches as a prefix, so "wireless head" finds headphones.
+ * A category filter is a posting list of its own and takes part in the scan like a term, so
+ * filtering to a small category over a common word only visits that category's products.
+ *
+ * Documents get increasing internal ids, so posting lists stay sorted just by appending.
+ * Updating a product marks its old document deleted and appends a new one. The space is only
+ * reclaimed by building a fresh index (ProductSearchService does that once
+ * {@link #deletedRatio()} passes its threshold); until then document frequencies still count the
+ * deleted documents.
+ *
+ * Searches share a read lock; writes take the write lock.
+ */
+public class ProductSearchIndex {
+
+    static final int NAME_WEIGHT = 3;
+    static final int CATEGORY_WEIGHT = 2;
+    static final int DESCRIPTION_WEIGHT = 1;
+
+    // a short prefix would otherwise pull in a large part of the dictionary
+    static final int MIN_PREFIX_LENGTH = 2;
+    static final int MAX_PREFIX_EXPANSIONS = 16;
+    private static final int MAX_PREFIX_SCAN = 1024;
+
+    // lengths are capped here so the BM25 length norms fit a small per-query table
+    private static final int MAX_NORM_LENGTH = 1023;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    // per-document flag bits, tested against a per-query mask in the scan loop
+    private static final byte DELETED = 1;
+    private static final byte INACTIVE = 2;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Postings> categoryPostings = new HashMap<>();
+    private final Map<Long, Integer> docByProduct = new HashMap<>();
+
+    // per internal document id
+    private long[] productIds = new long[1024];
+    private float[] prices = new float[1024]; // NaN when the product has no price
+    private short[] lengths = new short[1024];
+    private byte[] flags = new byte[1024];
+
+    private int maxDoc;
+    private int liveDocs;
+    private long totalLength;
+
+    // ---------------- WRITES ----------------
+    public void upsert(SearchDocument document) {
+        lock.writeLock().lock();
+        try {
+            delete(document.productId());
+            append(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            delete(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Releases the spare capacity left by growing the arrays, once a bulk build is done
+    public void trimToSize() {
+        lock.writeLock().lock();
+        try {
+            terms.values().forEach(Postings::trimToSize);
+            categoryPostings.values().forEach(Postings::trimToSize);
+            productIds = Arrays.copyOf(productIds, maxDoc);
+            prices = Arrays.copyOf(prices, maxDoc);
+            lengths = Arrays.copyOf(lengths, maxDoc);
+            flags = Arrays.copyOf(flags, maxDoc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void delete(Long productId) {
+        Integer doc = docByProduct.remove(productId);
+        if (doc != null) {
+            flags[doc] |= DELETED;
+            liveDocs--;
+            totalLength -= lengths[doc];
+        }
+    }
+
+    private void append(SearchDocument document) {
+        int doc = maxDoc++;
+        ensureCapacity(maxDoc);
+
+        productIds[doc] = document.productId();
+        prices[doc] = document.price() == null ? Float.NaN : document.price().floatValue();
+        if (Boolean.FALSE.equals(document.active())) {
+            flags[doc] |= INACTIVE;
+        }
+        if (document.categoryIds() != null) {
+            document.categoryIds().stream().distinct()
+                    .forEach(categoryId -> categoryPostings.computeIfAbsent(categoryId, c -> new Postings()).add(doc, 1));
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = addTerms(frequencies, document.name(), NAME_WEIGHT);
+        if (document.categoryNames() != null) {
+            for (String categoryName : document.categoryNames()) {
+                length += addTerms(frequencies, categoryName, CATEGORY_WEIGHT);
+            }
+        }
+        length += addTerms(frequencies, document.description(), DESCRIPTION_WEIGHT);
+        for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+            terms.computeIfAbsent(term.getKey(), t -> new Postings()).add(doc, term.getValue());
+        }
+
+        length = Math.min(length, MAX_NORM_LENGTH);
+        lengths[doc] = (short) length;
+        totalLength += length;
+        liveDocs++;
+        docByProduct.put(document.productId(), doc);
+    }
+
+    private static int addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        List<String> tokens = TextAnalyzer.tokenize(text);
+        for (String token : tokens) {
+            frequencies.merge(token, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > productIds.length) {
+            int grown = Math.max(capacity, productIds.length + (productIds.length >> 1));
+            productIds = Arrays.copyOf(productIds, grown);
+            prices = Arrays.copyOf(prices, grown);
+            lengths = Arrays.copyOf(lengths, grown);
+            flags = Arrays.copyOf(flags, grown);
+        }
+    }
+
+    // ---------------- READS ----------------
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // share of internal documents that are deleted and still take up space
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return maxDoc == 0 ? 0 : (double) (maxDoc - liveDocs) / maxDoc;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Long> productsInCategory(long categoryId) {
+        lock.readLock().lock();
+        try {
+            List<Long> found = new ArrayList<>();
+            Postings postings = categoryPostings.get(categoryId);
+            for (int i = 0; postings != null && i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if ((flags[doc] & DELETED) == 0) {
+                    found.add(productIds[doc]);
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SearchResult search(SearchQuery query) {
+        List<String> tokens = TextAnalyzer.tokenize(query.text());
+        if (tokens.isEmpty() || query.limit() <= 0) {
+            return new SearchResult(List.of(), List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return new SearchResult(List.of(), List.of(), 0);
+            }
+            List<Clause> clauses = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                Clause clause = i == tokens.size() - 1 ? prefixClause(tokens.get(i)) : exactClause(tokens.get(i));
+                if (clause == null) {
+                    return new SearchResult(List.of(), List.of(), 0);
+                }
+                clauses.add(clause);
+            }
+            if (query.categoryId() != null) {
+                Postings category = categoryPostings.get(query.categoryId());
+                if (category == null) {
+                    return new SearchResult(List.of(), List.of(), 0);
+                }
+                clauses.add(new Clause(List.of(category), maxDoc, true));
+            }
+            // drive the scan from the rarest clause, the others are only probed for its documents
+            clauses.sort(Comparator.comparingLong(Clause::cost));
+            return collect(query, clauses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private SearchResult collect(SearchQuery query, List<Clause> clauses) {
+        int wanted = query.offset() + query.limit();
+        float averageLength = (float) totalLength / liveDocs;
+        float[] norms = new float[MAX_NORM_LENGTH + 1];
+        for (int length = 0; length < norms.length; length++) {
+            norms[length] = K1 * (1 - B + B * length / averageLength);
+        }
+        // min-heap on score, ties broken towards the older document
+        PriorityQueue<Hit> top = new PriorityQueue<>(wanted + 1,
+                Comparator.comparingDouble(Hit::score).thenComparing(Hit::doc, Comparator.reverseOrder()));
+
+        // a document passes with every required flag and no rejected one: active=true rejects
+        // INACTIVE, active=false requires it
+        byte required = 0;
+        byte rejected = DELETED;
+        if (Boolean.TRUE.equals(query.active())) {
+            rejected |= INACTIVE;
+        } else if (Boolean.FALSE.equals(query.active())) {
+            required |= INACTIVE;
+        }
+        boolean priceFilter = query.minPrice() != null || query.maxPrice() != null;
+        // a product without a price never passes a price filter (NaN compares false)
+        float minPrice = query.minPrice() == null ? Float.NEGATIVE_INFINITY : query.minPrice().floatValue();
+        float maxPrice = query.maxPrice() == null ? Float.POSITIVE_INFINITY : query.maxPrice().floatValue();
+
+        Clause lead = clauses.get(0);
+        int totalHits = 0;
+        for (int doc = lead.nextDoc(); doc != NO_MORE_DOCS; doc = lead.nextDoc()) {
+            byte docFlags = flags[doc];
+            if ((docFlags & rejected) != 0 || (docFlags & required) != required) {
+                continue;
+            }
+            if (priceFilter && !(prices[doc] >= minPrice && prices[doc] <= maxPrice)) {
+                continue;
+            }
+            float norm = norms[lengths[doc]];
+            float score = lead.leadScore(norm);
+            boolean matchesAll = true;
+            for (int i = 1; i < clauses.size() && matchesAll; i++) {
+                float clauseScore = clauses.get(i).advanceTo(doc, norm);
+                matchesAll = clauseScore >= 0;
+                score += clauseScore;
+            }
+            if (!matchesAll) {
+                continue;
+            }
+            totalHits++;
+            if (top.size() < wanted) {
+                top.add(new Hit(doc, score));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new Hit(doc, score));
+            }
+        }
+
+        Hit[] ranked = top.toArray(new Hit[0]);
+        Arrays.sort(ranked, top.comparator().reversed());
+        List<Long> ids = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        for (int i = query.offset(); i < ranked.length; i++) {
+            ids.add(productIds[ranked[i].doc()]);
+            scores.add(ranked[i].score());
+        }
+        return new SearchResult(ids, scores, totalHits);
+    }
+
+    private Clause exactClause(String token) {
+        Postings postings = terms.get(token);
+        return postings == null ? null : new Clause(List.of(postings), maxDoc, false);
+    }
+
+    // the exact term (if indexed) plus the most frequent longer terms starting with it
+    private Clause prefixClause(String token) {
+        if (token.length() < MIN_PREFIX_LENGTH) {
+            return exactClause(token);
+        }
+        SortedMap<String, Postings> candidates = terms.subMap(token, token + Character.MAX_VALUE);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        List<Postings> expansions = new ArrayList<>();
+        int scanned = 0;
+        for (Postings postings : candidates.values()) {
+            if (scanned++ == MAX_PREFIX_SCAN) {
+                break;
+            }
+            expansions.add(postings);
+        }
+        if (expansions.size() > MAX_PREFIX_EXPANSIONS) {
+            Postings exact = terms.get(token);
+            expansions.sort(Comparator.comparingInt((Postings p) -> p.size).reversed());
+            expansions = new ArrayList<>(expansions.subList(0, MAX_PREFIX_EXPANSIONS));
+            if (exact != null && !expansions.contains(exact)) {
+                expansions.set(MAX_PREFIX_EXPANSIONS - 1, exact);
+            }
+        }
+        return new Clause(expansions, maxDoc, false);
+    }
+
+    private record Hit(int doc, float score) {
+    }
+
+    // ---------------- POSTINGS ----------------
+    // Documents in ascending order with their weighted term frequency (capped at 255, where BM25 has long saturated)
+    static final class Postings {
+
+        private int[] docs = new int[2];
+        private byte[] frequencies = new byte[2];
+        private int size;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                int grown = size + (size >> 1) + 1;
+                docs = Arrays.copyOf(docs, grown);
+                frequencies = Arrays.copyOf(frequencies, grown);
+            }
+            docs[size] = doc;
+            frequencies[size] = (byte) Math.min(frequency, 255);
+            size++;
+        }
+
+        int frequency(int position) {
+            return frequencies[position] & 0xFF;
+        }
+
+        void trimToSize() {
+            docs = Arrays.copyOf(docs, size);
+            frequencies = Arrays.copyOf(frequencies, size);
+        }
+    }
+
+    // ---------------- CLAUSE ----------------
+    // One query term: the union of its posting lists (one list, or one per prefix expansion).
+    // A filter clause only has to match and adds nothing to the score.
+    private static final class Clause {
+
+        private final Postings[] lists;
+        private final float[] idf;
+        private final int[] cursors;
+        private final long cost;
+
+        // list indexes in a binary heap ordered by the document under their cursor (unions only)
+        private final int[] heap;
+        private int heapSize;
+        private final int[] matched;
+        private final int[] matchedPositions;
+        private int matchedCount;
+
+        Clause(List<Postings> postings, int maxDoc, boolean filter) {
+            lists = postings.toArray(new Postings[0]);
+            idf = new float[lists.length];
+            cursors = new int[lists.length];
+            long total = 0;
+            for (int i = 0; i < lists.length; i++) {
+                int df = lists[i].size;
+                idf[i] = filter ? 0 : (float) Math.log(1 + (maxDoc - df + 0.5) / (df + 0.5));
+                total += df;
+            }
+            cost = total;
+
+            heap = new int[lists.length];
+            matched = new int[lists.length];
+            matchedPositions = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                if (lists[i].size > 0) {
+                    heap[heapSize++] = i;
+                    siftUp(heapSize - 1);
+                }
+            }
+        }
+
+        long cost() {
+            return cost;
+        }
+
+        // Next document of the union, for the clause driving the scan; the lists containing it are
+        // remembered for leadScore
+        int nextDoc() {
+            if (lists.length == 1) {
+                int position = cursors[0]++;
+                if (position >= lists[0].size) {
+                    return NO_MORE_DOCS;
+                }
+                matched[0] = 0;
+                matchedPositions[0] = position;
+                matchedCount = 1;
+                return lists[0].docs[position];
+            }
+            if (heapSize == 0) {
+                return NO_MORE_DOCS;
+            }
+            int doc = current(heap[0]);
+            matchedCount = 0;
+            while (heapSize > 0 && current(heap[0]) == doc) {
+                int list = heap[0];
+                matched[matchedCount] = list;
+                matchedPositions[matchedCount++] = cursors[list];
+                cursors[list]++;
+                restoreTop();
+            }
+            return doc;
+        }
+
+        float leadScore(float norm) {
+            float score = 0;
+            for (int i = 0; i < matchedCount; i++) {
+                score += termScore(matched[i], matchedPositions[i], norm);
+            }
+            return score;
+        }
+
+        // Moves the cursors to the first document >= doc; returns the score there, or -1 when no list has doc.
+        // Calls must come with increasing doc.
+        float advanceTo(int doc, float norm) {
+            if (lists.length == 1) {
+                int position = gallop(lists[0], cursors[0], doc);
+                cursors[0] = position;
+                return position < lists[0].size && lists[0].docs[position] == doc ? termScore(0, position, norm) : -1;
+            }
+            // only the lists still behind doc move; on sparse expansions that is a small share of them
+            while (heapSize > 0 && current(heap[0]) < doc) {
+                int list = heap[0];
+                cursors[list] = gallop(lists[list], cursors[list], doc);
+                restoreTop();
+            }
+            if (heapSize == 0 || current(heap[0]) != doc) {
+                return -1;
+            }
+            return matchingScore(0, doc, norm);
+        }
+
+        // sums the lists positioned on doc, which form a subtree at the top of the heap
+        private float matchingScore(int node, int doc, float norm) {
+            if (node >= heapSize || current(heap[node]) != doc) {
+                return 0;
+            }
+            int list = heap[node];
+            return termScore(list, cursors[list], norm)
+                    + matchingScore(2 * node + 1, doc, norm)
+                    + matchingScore(2 * node + 2, doc, norm);
+        }
+
+        private float termScore(int list, int position, float norm) {
+            int tf = lists[list].frequency(position);
+            return idf[list] * tf * (K1 + 1) / (tf + norm);
+        }
+
+        private int current(int list) {
+            return lists[list].docs[cursors[list]];
+        }
+
+        // after the top list's cursor moved: drop it when exhausted, otherwise sink it to its place
+        private void restoreTop() {
+            if (cursors[heap[0]] >= lists[heap[0]].size) {
+                heap[0] = heap[--heapSize];
+            }
+            if (heapSize > 0) {
+                siftDown(0);
+            }
+        }
+
+        // exponential then binary search, since the probes only move forward
+        private static int gallop(Postings postings, int from, int target) {
+            int size = postings.size;
+            if (from >= size || postings.docs[from] >= target) {
+                return from;
+            }
+            int step = 1;
+            int low = from;
+            while (low + step < size && postings.docs[low + step] < target) {
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, size - 1);
+            int found = Arrays.binarySearch(postings.docs, low + 1, high + 1, target);
+            return found >= 0 ? found : -(found + 1);
+        }
+
+        private void siftUp(int index) {
+            int list = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (current(heap[parent]) <= current(list)) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = list;
+        }
+
+        private void siftDown(int index) {
+            int list = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && current(heap[child + 1]) < current(heap[child])) {
+                    child++;
+                }
+                if (current(list) <= current(heap[child])) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = list;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.omnistore.search;
+
+import com.omnistore.dto.ProductResponseDto;
+import com.omnistore.dto.ProductSearchResponseDto;
+import com.omnistore.entity.Product;
+import com.omnistore.exception.BadRequestException;
+import com.omnistore.repository.ProductCategoryRepository;
+import com.omnistore.repository.ProductRepository;
+import com.omnistore.services.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Product search over an in-process {@link ProductSearchIndex}.
+ *
+ * The index is built after startup from one streaming scan of products merged with their
+ * category rows, and replaced the same way once too many of its documents are stale. Each
+ * build fills a new index off to the side and swaps it in; products that changed while the
+ * scan was running are re-read into it first. Between builds, product, stock and category
+ * writes publish events and the affected products are re-read once the write commits. A category
+ * change can touch thousands of products, so it is only queued; a scheduled pass re-reads the
+ * products of queued categories in batches.
+ *
+ * Until the first build finishes, searches only see products written since startup.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchService.class);
+
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_OFFSET = 1000;
+
+    // below this many products a stale share is cheap to carry, so no rebuild is triggered
+    private static final int MIN_REBUILD_SIZE = 1000;
+    private static final int REINDEX_BATCH_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final ProductCategoryRepository productCategoryRepository;
+    private final ProductService productService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final double rebuildDeletedRatio;
+
+    private volatile ProductSearchIndex index = new ProductSearchIndex();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingCategories = ConcurrentHashMap.newKeySet();
+
+    public ProductSearchService(ProductRepository productRepository,
+                                ProductCategoryRepository productCategoryRepository,
+                                ProductService productService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${search.rebuild.deleted-ratio:0.3}") double rebuildDeletedRatio) {
+        this.productRepository = productRepository;
+        this.productCategoryRepository = productCategoryRepository;
+        this.productService = productService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rebuildDeletedRatio = rebuildDeletedRatio;
+    }
+
+    // ---------------- SEARCH ----------------
+    public ProductSearchResponseDto search(String text, Long categoryId, Double minPrice, Double maxPrice,
+                                           Boolean active, int offset, int size) {
+        if (text == null || text.isBlank()) {
+            throw new BadRequestException("Search text is required");
+        }
+        if (offset < 0 || offset > MAX_OFFSET) {
+            throw new BadRequestException("Offset must be between 0 and " + MAX_OFFSET);
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        SearchResult result = index.search(new SearchQuery(text, categoryId, minPrice, maxPrice, active, offset, pageSize));
+        List<ProductResponseDto> items = productService.getProductSummaries(result.productIds());
+        return new ProductSearchResponseDto(items, result.totalHits(), offset);
+    }
+
+    // ---------------- INDEX MAINTENANCE ----------------
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("search-index-build").start(this::rebuild);
+    }
+
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            ProductSearchIndex fresh = new ProductSearchIndex();
+            readOnlyTransaction.executeWithoutResult(status -> scanInto(fresh));
+            fresh.trimToSize();
+            index = fresh;
+
+            // writes that landed during the scan may be missing from it; anything recorded from here
+            // on is applied to the new index directly
+            List<Long> changed = new ArrayList<>(changedDuringBuild);
+            changedDuringBuild.removeAll(changed);
+            changed.forEach(this::reindex);
+
+            log.info("Search index built: {} products in {} ms", fresh.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            log.error("Search index build failed, keeping the current index", e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private void scanInto(ProductSearchIndex target) {
+        try (Stream<ProductResponseDto> products = productRepository.streamAllSummaries();
+             Stream<CategoryAssignment> assignments = productCategoryRepository.streamAllAssignments()) {
+            ProductCategoryMerge.forEach(products, ProductResponseDto::getId, assignments, (product, categories) ->
+                    target.upsert(toDocument(product.getId(), product.getName(), product.getDescription(),
+                            product.getPrice(), product.getActive(), categories)));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        refresh(event.productId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        pendingCategories.add(event.categoryId());
+    }
+
+    // The products to re-read are the ones indexed under the category (a rename or delete) plus the
+    // ones in it now. A build re-reads everything anyway, so the queue waits for it to finish.
+    @Scheduled(fixedDelayString = "${search.category-refresh-ms:1000}")
+    public void refreshCategories() {
+        if (pendingCategories.isEmpty() || building.get()) {
+            return;
+        }
+        List<Long> categoryIds = new ArrayList<>(pendingCategories);
+        pendingCategories.removeAll(categoryIds);
+
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (Long categoryId : categoryIds) {
+            productIds.addAll(index.productsInCategory(categoryId));
+            try {
+                productIds.addAll(productCategoryRepository.findProductIdsByCategoryId(categoryId));
+            } catch (RuntimeException e) {
+                // the category is retried on the next pass
+                pendingCategories.add(categoryId);
+                log.warn("Could not read the products of category {}", categoryId, e);
+            }
+        }
+
+        List<Long> products = new ArrayList<>(productIds);
+        for (int from = 0; from < products.size(); from += REINDEX_BATCH_SIZE) {
+            reindexBatch(products.subList(from, Math.min(products.size(), from + REINDEX_BATCH_SIZE)));
+        }
+        // a build that started meanwhile may have read the old category names
+        if (building.get()) {
+            pendingCategories.addAll(categoryIds);
+        }
+        rebuildIfStale();
+    }
+
+    private void refresh(Long productId) {
+        if (building.get()) {
+            changedDuringBuild.add(productId);
+        }
+        reindex(productId);
+        rebuildIfStale();
+    }
+
+    private void rebuildIfStale() {
+        ProductSearchIndex current = index;
+        if (!building.get() && current.size() >= MIN_REBUILD_SIZE && current.deletedRatio() > rebuildDeletedRatio) {
+            Thread.ofVirtual().name("search-index-build").start(this::rebuild);
+        }
+    }
+
+    // runs after the write committed; a failure only leaves this product stale until the next build
+    private void reindex(Long productId) {
+        try {
+            Product product = productRepository.findById(productId).orElse(null);
+            if (product == null) {
+                index.remove(productId);
+                return;
+            }
+            List<CategoryAssignment> categories = productCategoryRepository.findAssignmentsByProductId(productId);
+            index.upsert(toDocument(product.getId(), product.getName(), product.getDescription(),
+                    product.getPrice(), product.getActive(), categories));
+        } catch (RuntimeException e) {
+            log.warn("Could not re-index product {}", productId, e);
+        }
+    }
+
+    // two queries per batch instead of two per product
+    private void reindexBatch(List<Long> productIds) {
+        try {
+            Map<Long, List<CategoryAssignment>> categories = productCategoryRepository.findAssignmentsByProductIds(productIds)
+                    .stream()
+                    .collect(Collectors.groupingBy(CategoryAssignment::productId));
+            Set<Long> missing = new HashSet<>(productIds);
+            for (ProductResponseDto product : productRepository.findSummariesByIds(productIds)) {
+                missing.remove(product.getId());
+                index.upsert(toDocument(product.getId(), product.getName(), product.getDescription(),
+                        product.getPrice(), product.getActive(), categories.getOrDefault(product.getId(), List.of())));
+            }
+            missing.forEach(index::remove);
+        } catch (RuntimeException e) {
+            log.warn("Could not re-index {} products", productIds.size(), e);
+        }
+    }
+
+    private static SearchDocument toDocument(Long productId, String name, String description, Double price,
+                                             Boolean active, List<CategoryAssignment> categories) {
+        return new SearchDocument(productId, name, description, price, active,
+                categories.stream().map(CategoryAssignment::categoryId).toList(),
+                categories.stream().map(CategoryAssignment::categoryName).toList());
+    }
+}
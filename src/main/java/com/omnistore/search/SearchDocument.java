@@ -0,0 +1,13 @@
+package com.omnistore.search;
+
+import java.util.List;
+
+// What the search index keeps about one product
+public record SearchDocument(Long productId,
+                             String name,
+                             String description,
+                             Double price,
+                             Boolean active,
+                             List<Long> categoryIds,
+                             List<String> categoryNames) {
+}
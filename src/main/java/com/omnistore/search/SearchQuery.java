@@ -0,0 +1,11 @@
+package com.omnistore.search;
+
+// Free text plus optional filters; null filters match everything. The last term is matched as a prefix.
+public record SearchQuery(String text,
+                          Long categoryId,
+                          Double minPrice,
+                          Double maxPrice,
+                          Boolean active,
+                          int offset,
+                          int limit) {
+}
@@ -0,0 +1,7 @@
+package com.omnistore.search;
+
+import java.util.List;
+
+// Product ids best match first, with their BM25 scores; totalHits counts every match, not just this page
+public record SearchResult(List<Long> productIds, List<Float> scores, int totalHits) {
+}
@@ -0,0 +1,7 @@
+package com.omnistore.search;
+
+import java.util.Collection;
+
+// Stock of these products moved (reservation, release, hot-stock flush); the in-stock facet re-reads them
+public record StockChangedEvent(Collection<Long> productIds) {
+}
@@ -0,0 +1,173 @@
+package com.omnistore.search;
+
+import com.omnistore.dto.SuggestionDto;
+import com.omnistore.entity.Category;
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.repository.CategoryRepository;
+import com.omnistore.repository.OrderItemRepository;
+import com.omnistore.repository.ProductCategoryRepository;
+import com.omnistore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Typeahead suggestions over product and category names, served from a {@link SuggestionTrie}
+ * without touching the database.
+ *
+ * Product popularity is units ordered in the sales window plus a fixed weight per review;
+ * a category weighs as much as its active products together. The trie is built off to the
+ * side after startup and swapped in whole. After that it is rebuilt on a schedule when a
+ * product or category changed, and at least every max-age so popularity keeps up.
+ */
+@Service
+public class SuggestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestionService.class);
+
+    public static final int MAX_SUGGESTIONS = 20;
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    private final ProductRepository productRepository;
+    private final ProductCategoryRepository productCategoryRepository;
+    private final CategoryRepository categoryRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Duration salesWindow;
+    private final long reviewWeight;
+    private final long maxAgeMs;
+
+    private volatile SuggestionTrie trie = SuggestionTrie.empty();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile boolean stale = true;
+    private volatile long builtAt;
+
+    public SuggestionService(ProductRepository productRepository,
+                             ProductCategoryRepository productCategoryRepository,
+                             CategoryRepository categoryRepository,
+                             OrderItemRepository orderItemRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${suggest.popularity.sales-window:P90D}") Duration salesWindow,
+                             @Value("${suggest.popularity.review-weight:3}") long reviewWeight,
+                             @Value("${suggest.rebuild.max-age-ms:3600000}") long maxAgeMs) {
+        this.productRepository = productRepository;
+        this.productCategoryRepository = productCategoryRepository;
+        this.categoryRepository = categoryRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.salesWindow = salesWindow;
+        this.reviewWeight = reviewWeight;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    // ---------------- SUGGEST ----------------
+    // called per keystroke, so nothing to reject: an empty prefix just has no suggestions
+    public List<SuggestionDto> suggest(String prefix, int size) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        if (prefix.length() > MAX_QUERY_LENGTH) {
+            prefix = prefix.substring(0, MAX_QUERY_LENGTH);
+        }
+        int limit = Math.max(1, Math.min(size, MAX_SUGGESTIONS));
+        return trie.suggest(prefix, limit).stream()
+                .map(s -> new SuggestionDto(s.kind().name(), s.id(), s.text()))
+                .toList();
+    }
+
+    // ---------------- BUILD ----------------
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread.ofVirtual().name("suggest-build").start(this::rebuild);
+    }
+
+    // the build runs on its own thread so it never holds up the other scheduled jobs
+    @Scheduled(fixedDelayString = "${suggest.rebuild.interval-ms:300000}",
+            initialDelayString = "${suggest.rebuild.interval-ms:300000}")
+    public void rebuildIfStale() {
+        if (stale || System.currentTimeMillis() - builtAt > maxAgeMs) {
+            Thread.ofVirtual().name("suggest-build").start(this::rebuild);
+        }
+    }
+
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            // cleared before the scan, so a change it might have missed marks the new trie stale again
+            stale = false;
+            SuggestionTrie.Builder builder = readOnlyTransaction.execute(status -> scan());
+            SuggestionTrie fresh = builder.build();
+            trie = fresh;
+            builtAt = System.currentTimeMillis();
+
+            log.info("Suggestions built: {} entries, {} trie nodes in {} ms", fresh.size(), fresh.nodeCount(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            stale = true;
+            log.error("Suggestion build failed, keeping the current trie", e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private SuggestionTrie.Builder scan() {
+        Map<Long, Long> unitsOrdered = new HashMap<>();
+        try (Stream<ProductSales> sales = orderItemRepository.streamUnitsOrderedSince(
+                LocalDateTime.now().minus(salesWindow), OrderStatus.CANCELLED)) {
+            sales.forEach(s -> unitsOrdered.put(s.productId(), s.units()));
+        }
+
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
+        Map<Long, Long> categoryWeights = new HashMap<>();
+
+        try (Stream<SuggestionSource> products = productRepository.streamSuggestionSources();
+             Stream<CategoryAssignment> assignments = productCategoryRepository.streamAllAssignments()) {
+            ProductCategoryMerge.forEach(products, SuggestionSource::productId, assignments, (product, categories) -> {
+                // inactive products are not suggested and add nothing to their categories
+                if (Boolean.FALSE.equals(product.active())) {
+                    return;
+                }
+                long weight = unitsOrdered.getOrDefault(product.productId(), 0L)
+                        + reviewWeight * (product.ratingCount() == null ? 0 : product.ratingCount());
+                builder.add(SuggestionTrie.Kind.PRODUCT, product.productId(), product.name(), weight);
+                categories.forEach(category -> categoryWeights.merge(category.categoryId(), weight, Long::sum));
+            });
+        }
+
+        for (Category category : categoryRepository.findAll()) {
+            builder.add(SuggestionTrie.Kind.CATEGORY, category.getId(), category.getName(),
+                    categoryWeights.getOrDefault(category.getId(), 0L));
+        }
+        return builder;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        stale = true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        stale = true;
+    }
+}
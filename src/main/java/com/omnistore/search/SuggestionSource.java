@@ -0,0 +1,5 @@
+package com.omnistore.search;
+
+// The columns of a product the suggestion build needs, read by ProductRepository.streamSuggestionSources
+public record SuggestionSource(Long productId, String name, Boolean active, Integer ratingCount) {
+}
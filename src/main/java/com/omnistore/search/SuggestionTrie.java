@@ -0,0 +1,371 @@
+package com.omnistore.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable prefix index for typeahead. It is built in one go and replaced as a whole.
+ *
+ * A radix trie (chains of single children collapsed into one edge) kept in parallel arrays in
+ * depth-first order: a node's first child is the next node and its next sibling is at
+ * {@code end[node]}. Edge labels are not copied; each node points at one key running through it
+ * and reads its label out of that key's text. The keys of a suggestion are its folded text from
+ * the start and from up to {@link #MAX_WORD_KEYS} later words, so "head" finds
+ * "Wireless Headphones".
+ *
+ * Suggestions are numbered by popularity, best first, and every node keeps the best number
+ * found below it. A lookup walks down to the prefix and then expands nodes best-first, so it
+ * touches a few nodes per returned suggestion however large the subtree is.
+ */
+public final class SuggestionTrie {
+
+    public enum Kind { PRODUCT, CATEGORY }
+
+    public record Suggestion(Kind kind, long id, String text) {}
+
+    // keys are cut here; nobody types further than this into a suggest box
+    static final int MAX_KEY_LENGTH = 48;
+    static final int MAX_WORD_KEYS = 3;
+    // a key's start offset has to fit the low byte of its reference
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private final Suggestion[] suggestions; // by rank
+    private final String[] texts;           // normalized text, by rank
+
+    // per node
+    private final int[] end;
+    private final byte[] depths;
+    private final int[] labelRanks;
+    private final byte[] labelOffsets;
+    private final int[] best;
+    private final int[] terminalStart; // one extra entry, so a node's terminals end where the next node's start
+    private final int[] terminals;
+
+    private SuggestionTrie(Suggestion[] suggestions, String[] texts, Nodes nodes) {
+        this.suggestions = suggestions;
+        this.texts = texts;
+        int count = nodes.count;
+        this.end = Arrays.copyOf(nodes.end, count);
+        this.depths = Arrays.copyOf(nodes.depths, count);
+        this.labelRanks = Arrays.copyOf(nodes.labelRanks, count);
+        this.labelOffsets = Arrays.copyOf(nodes.labelOffsets, count);
+        this.best = Arrays.copyOf(nodes.best, count);
+        this.terminalStart = Arrays.copyOf(nodes.terminalStart, count + 1);
+        this.terminalStart[count] = nodes.terminalCount;
+        this.terminals = Arrays.copyOf(nodes.terminals, nodes.terminalCount);
+    }
+
+    public static SuggestionTrie empty() {
+        return new Builder().build();
+    }
+
+    public int size() {
+        return suggestions.length;
+    }
+
+    public int nodeCount() {
+        return end.length;
+    }
+
+    // ---------------- LOOKUP ----------------
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String query = normalize(prefix, true);
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (query.length() > MAX_KEY_LENGTH) {
+            query = query.substring(0, MAX_KEY_LENGTH);
+        }
+        int node = find(query);
+        return node < 0 ? List.of() : collect(node, limit);
+    }
+
+    private int find(String query) {
+        int node = 0;
+        while (depths[node] < query.length()) {
+            int depth = depths[node];
+            char next = query.charAt(depth);
+            int child = node + 1;
+            while (child < end[node] && labelChar(child, depth) != next) {
+                child = end[child];
+            }
+            if (child >= end[node]) {
+                return -1;
+            }
+            int stop = Math.min(depths[child], query.length());
+            for (int i = depth + 1; i < stop; i++) {
+                if (labelChar(child, i) != query.charAt(i)) {
+                    return -1;
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private char labelChar(int node, int position) {
+        return texts[labelRanks[node]].charAt((labelOffsets[node] & 0xFF) + position);
+    }
+
+    // best-first over the subtree; a suggestion reachable through several of its keys is returned once
+    private List<Suggestion> collect(int root, int limit) {
+        List<Suggestion> result = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingInt(Candidate::rank));
+        if (best[root] != Integer.MAX_VALUE) {
+            queue.add(new Candidate(best[root], root, -1));
+        }
+
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate candidate = queue.poll();
+            int node = candidate.node();
+            if (candidate.terminal() >= 0) {
+                if (seen.add(candidate.rank())) {
+                    result.add(suggestions[candidate.rank()]);
+                }
+                // terminals are sorted, so the next one is the node's next best
+                int next = candidate.terminal() + 1;
+                if (next < terminalStart[node + 1]) {
+                    queue.add(new Candidate(terminals[next], node, next));
+                }
+                continue;
+            }
+            if (terminalStart[node] < terminalStart[node + 1]) {
+                queue.add(new Candidate(terminals[terminalStart[node]], node, terminalStart[node]));
+            }
+            for (int child = node + 1; child < end[node]; child = end[child]) {
+                queue.add(new Candidate(best[child], child, -1));
+            }
+        }
+        return result;
+    }
+
+    private record Candidate(int rank, int node, int terminal) {}
+
+    // Folded to lower-case ASCII where possible, with each run of anything but letters and digits
+    // turned into one space. A trailing space is kept for queries: "usb " should not match "usbc".
+    static String normalize(String text, boolean keepTrailingSpace) {
+        if (text == null) {
+            return "";
+        }
+        String folded = TextAnalyzer.fold(text);
+        StringBuilder out = new StringBuilder(Math.min(folded.length(), MAX_TEXT_LENGTH));
+        boolean gap = false;
+        for (int i = 0; i < folded.length() && out.length() < MAX_TEXT_LENGTH - 1; i++) {
+            char c = folded.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                gap = true;
+                continue;
+            }
+            if (gap && !out.isEmpty()) {
+                out.append(' ');
+            }
+            gap = false;
+            out.append(c);
+        }
+        if (gap && keepTrailingSpace && !out.isEmpty()) {
+            out.append(' ');
+        }
+        return out.toString();
+    }
+
+    // ---------------- BUILD ----------------
+    public static class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        public Builder add(Kind kind, long id, String text, long weight) {
+            String normalized = normalize(text, false);
+            if (!normalized.isEmpty()) {
+                entries.add(new Entry(new Suggestion(kind, id, text), normalized, weight));
+            }
+            return this;
+        }
+
+        public SuggestionTrie build() {
+            // rank: heavier first, then shorter, then alphabetical, so equal weights rank the same on every build
+            entries.sort(Comparator.comparingLong(Entry::weight).reversed()
+                    .thenComparingInt(e -> e.text().length())
+                    .thenComparing(Entry::text));
+            Suggestion[] suggestions = new Suggestion[entries.size()];
+            String[] texts = new String[entries.size()];
+            for (int rank = 0; rank < entries.size(); rank++) {
+                suggestions[rank] = entries.get(rank).suggestion();
+                texts[rank] = entries.get(rank).text();
+            }
+            entries.clear();
+
+            long[] keys = keys(texts);
+            sort(keys, 0, keys.length - 1, 0, texts);
+
+            Nodes nodes = new Nodes(texts, keys);
+            nodes.build(0, keys.length, 0);
+            return new SuggestionTrie(suggestions, texts, nodes);
+        }
+
+        private record Entry(Suggestion suggestion, String text, long weight) {}
+    }
+
+    // A key is a reference to a suggestion's text from some offset: rank in the high bits, offset in the low byte
+    private static long[] keys(String[] texts) {
+        long[] keys = new long[texts.length * (1 + MAX_WORD_KEYS)];
+        int count = 0;
+        for (int rank = 0; rank < texts.length; rank++) {
+            String text = texts[rank];
+            keys[count++] = (long) rank << 8;
+            int words = 0;
+            for (int i = 1; i < text.length() && words < MAX_WORD_KEYS; i++) {
+                if (text.charAt(i - 1) == ' ' && !isStopWordAt(text, i)) {
+                    keys[count++] = (long) rank << 8 | i;
+                    words++;
+                }
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    private static boolean isStopWordAt(String text, int start) {
+        int stop = text.indexOf(' ', start);
+        return TextAnalyzer.STOP_WORDS.contains(text.substring(start, stop < 0 ? text.length() : stop));
+    }
+
+    // the key's character at depth, or -1 past its end
+    private static int charAt(String[] texts, long key, int depth) {
+        String text = texts[(int) (key >>> 8)];
+        int position = (int) (key & 0xFF) + depth;
+        return depth < MAX_KEY_LENGTH && position < text.length() ? text.charAt(position) : -1;
+    }
+
+    // three-way radix quicksort on the keys' characters from depth on; hi is inclusive
+    private static void sort(long[] keys, int lo, int hi, int depth, String[] texts) {
+        while (hi - lo >= 16) {
+            int pivot = charAt(texts, keys[lo + (hi - lo) / 2], depth);
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                int c = charAt(texts, keys[i], depth);
+                if (c < pivot) {
+                    swap(keys, lt++, i++);
+                } else if (c > pivot) {
+                    swap(keys, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            sort(keys, lo, lt - 1, depth, texts);
+            if (pivot >= 0) {
+                sort(keys, lt, gt, depth + 1, texts);
+            }
+            lo = gt + 1;
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(texts, keys[j - 1], keys[j], depth) > 0; j--) {
+                swap(keys, j - 1, j);
+            }
+        }
+    }
+
+    private static int compare(String[] texts, long a, long b, int depth) {
+        for (int d = depth; ; d++) {
+            int ca = charAt(texts, a, d);
+            int cb = charAt(texts, b, d);
+            if (ca != cb || ca < 0) {
+                return Integer.compare(ca, cb);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, int i, int j) {
+        long tmp = keys[i];
+        keys[i] = keys[j];
+        keys[j] = tmp;
+    }
+
+    // Growable node arrays, filled in depth-first order from the sorted keys
+    private static final class Nodes {
+
+        private final String[] texts;
+        private final long[] keys;
+
+        int count;
+        int[] end;
+        byte[] depths;
+        int[] labelRanks;
+        byte[] labelOffsets;
+        int[] best;
+        int[] terminalStart;
+        int terminalCount;
+        int[] terminals;
+
+        Nodes(String[] texts, long[] keys) {
+            this.texts = texts;
+            this.keys = keys;
+            int capacity = Math.max(16, keys.length);
+            end = new int[capacity];
+            depths = new byte[capacity];
+            labelRanks = new int[capacity];
+            labelOffsets = new byte[capacity];
+            best = new int[capacity];
+            terminalStart = new int[capacity + 1];
+            terminals = new int[Math.max(16, keys.length)];
+        }
+
+        // node for keys[lo, hi), which all share their first `depth` characters; keys ending here sort first
+        int build(int lo, int hi, int depth) {
+            int node = count++;
+            ensureCapacity(count);
+            depths[node] = (byte) depth;
+            if (lo < hi) {
+                labelRanks[node] = (int) (keys[lo] >>> 8);
+                labelOffsets[node] = (byte) keys[lo];
+            }
+
+            terminalStart[node] = terminalCount;
+            int i = lo;
+            while (i < hi && charAt(texts, keys[i], depth) < 0) {
+                terminals[terminalCount++] = (int) (keys[i++] >>> 8);
+            }
+            Arrays.sort(terminals, terminalStart[node], terminalCount);
+            int bestRank = terminalCount > terminalStart[node] ? terminals[terminalStart[node]] : Integer.MAX_VALUE;
+
+            while (i < hi) {
+                int c = charAt(texts, keys[i], depth);
+                int j = i + 1;
+                while (j < hi && charAt(texts, keys[j], depth) == c) {
+                    j++;
+                }
+                // the group is sorted, so what its first and last keys share, all of them share
+                int childDepth = depth + 1;
+                while (charAt(texts, keys[i], childDepth) >= 0
+                        && charAt(texts, keys[i], childDepth) == charAt(texts, keys[j - 1], childDepth)) {
+                    childDepth++;
+                }
+                int child = build(i, j, childDepth);
+                bestRank = Math.min(bestRank, best[child]);
+                i = j;
+            }
+            end[node] = count;
+            best[node] = bestRank;
+            return node;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size <= end.length) {
+                return;
+            }
+            int capacity = end.length + (end.length >> 1);
+            end = Arrays.copyOf(end, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            labelRanks = Arrays.copyOf(labelRanks, capacity);
+            labelOffsets = Arrays.copyOf(labelOffsets, capacity);
+            best = Arrays.copyOf(best, capacity);
+            terminalStart = Arrays.copyOf(terminalStart, capacity + 1);
+        }
+    }
+}
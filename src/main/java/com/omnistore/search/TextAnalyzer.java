@@ -0,0 +1,72 @@
+package com.omnistore.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into lower-case ASCII-folded terms on anything that is not a letter or digit.
+ * The same analysis is applied at index and query time. No stemming. English stop words are
+ * dropped: they carry no ranking signal and their posting lists would cover most of the catalog.
+ */
+public final class TextAnalyzer {
+
+    // terms longer than this are cut, so a pasted blob cannot bloat the dictionary
+    static final int MAX_TERM_LENGTH = 40;
+
+    // the usual English set (as in Lucene's StandardAnalyzer)
+    static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these", "they",
+            "this", "to", "was", "will", "with");
+
+    private TextAnalyzer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String folded = fold(text);
+
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() < MAX_TERM_LENGTH) {
+                    term.append(c);
+                }
+            } else if (!term.isEmpty()) {
+                addTerm(terms, term);
+            }
+        }
+        if (!term.isEmpty()) {
+            addTerm(terms, term);
+        }
+        return terms;
+    }
+
+    // lower-case with accents stripped; plain ASCII skips the normalizer, which is most of the calls
+    public static String fold(String text) {
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return text.toLowerCase(Locale.ROOT);
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static void addTerm(List<String> terms, StringBuilder term) {
+        String value = term.toString();
+        if (!STOP_WORDS.contains(value)) {
+            terms.add(value);
+        }
+        term.setLength(0);
+    }
+}
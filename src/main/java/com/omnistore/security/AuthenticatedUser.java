@@ -0,0 +1,36 @@
+package com.omnistore.security;
+
+import java.security.Principal;
+
+/**
+ * Principal built from the JWT claims, so controllers get the user id without a DB lookup.
+ * The id is null for tokens issued before the uid claim existed.
+ */
+public class AuthenticatedUser implements Principal {
+
+    private final Long id;
+    private final String email;
+    private final String role;
+
+    public AuthenticatedUser(Long id, String email, String role) {
+        this.id = id;
+        this.email = email;
+        this.role = role;
+    }
+
+    public Long getId() { return id; }
+
+    public String getEmail() { return email; }
+
+    public String getRole() { return role; }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return email;
+    }
+}
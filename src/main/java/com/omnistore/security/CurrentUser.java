@@ -0,0 +1,15 @@
+package com.omnistore.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the caller into a controller method, either as {@link AuthenticatedUser}
+ * or as the user id ({@code @CurrentUser Long userId}).
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -1,12 +1,10 @@
 package com.omnistore.security;
 
-import com.omnistore.repository.SessionRepository;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -18,10 +16,12 @@ import java.util.List;
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    private final SessionRepository sessionRepository;
+    private final SessionValidationCache sessionValidationCache;
+    private final JwtUtil jwtUtil;
 
-    public JwtAuthFilter(SessionRepository sessionRepository) {
-        this.sessionRepository = sessionRepository;
+    public JwtAuthFilter(SessionValidationCache sessionValidationCache, JwtUtil jwtUtil) {
+        this.sessionValidationCache = sessionValidationCache;
+        this.jwtUtil = jwtUtil;
     }
 
     @Override
@@ -33,21 +33,21 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (header != null && header.startsWith("Bearer ")) {
             String token = header.substring(7);
 
-            // Check if session is valid (exists in DB)
-            if (sessionRepository.findByToken(token).isEmpty()) {
+            // Check if session is valid (cached, falls back to the DB on a miss)
+            if (!sessionValidationCache.isValid(token)) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.getWriter().write("Invalid or expired session");
                 return;
             }
 
             try {
-                Claims claims = JwtUtil.parseToken(token);
+                Claims claims = jwtUtil.parseToken(token);
                 String email = claims.getSubject();
                 String role = claims.get("role", String.class);
+                Long userId = claims.get(JwtUtil.USER_ID_CLAIM, Long.class);
 
-                var auth = new UsernamePasswordAuthenticationToken(
-                        email,
-                        null,
+                var auth = new JwtAuthenticationToken(
+                        new AuthenticatedUser(userId, email, role),
                         List.of(new SimpleGrantedAuthority("ROLE_" + role))
                 );
 
@@ -0,0 +1,121 @@
+package com.omnistore.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Derives HMAC signing keys once and hands out a single, thread-safe JwtParser.
+ * Tokens carry the signing key id in their "kid" header. After a rotation the
+ * previous key still verifies tokens until the overlap window closes. Tokens
+ * without a kid (issued before rotation support) are checked against the active key.
+ */
+@Component
+public class JwtKeyManager {
+
+    private final Duration rotationOverlap;
+    private final JwtParser parser;
+
+    private volatile KeyRing keyRing;
+
+    public JwtKeyManager(@Value("${security.jwt.kid:k1}") String kid,
+                         @Value("${security.jwt.secret:your-secret-key}") String secret,
+                         @Value("${security.jwt.previous-kid:}") String previousKid,
+                         @Value("${security.jwt.previous-secret:}") String previousSecret,
+                         @Value("${security.jwt.rotation-overlap:PT24H}") Duration rotationOverlap) {
+        this.rotationOverlap = rotationOverlap;
+
+        Map<String, VerificationKey> keys = new HashMap<>();
+        if (!previousKid.isBlank() && !previousSecret.isBlank()) {
+            keys.put(previousKid, new VerificationKey(deriveKey(previousSecret), Instant.now().plus(rotationOverlap)));
+        }
+        SecretKey activeKey = deriveKey(secret);
+        keys.put(kid, new VerificationKey(activeKey, null));
+        this.keyRing = new KeyRing(kid, activeKey, Map.copyOf(keys));
+
+        // the parser is immutable; key lookups go through the current ring on every parse
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolve(header.getKeyId());
+                    }
+                })
+                .build();
+    }
+
+    public JwtParser parser() {
+        return parser;
+    }
+
+    // JwtBuilder is mutable, so every token gets a fresh one preloaded with the active key
+    public JwtBuilder newBuilder() {
+        KeyRing ring = keyRing;
+        return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, ring.activeKid())
+                .signWith(ring.activeKey(), SignatureAlgorithm.HS256);
+    }
+
+    public synchronized void rotate(String newKid, String newSecret) {
+        KeyRing current = keyRing;
+        if (current.keys().containsKey(newKid)) {
+            throw new IllegalArgumentException("Key id already in use: " + newKid);
+        }
+
+        Instant now = Instant.now();
+        Map<String, VerificationKey> keys = new HashMap<>();
+        current.keys().forEach((id, key) -> {
+            if (key.validUntil() == null || key.validUntil().isAfter(now)) {
+                keys.put(id, key);
+            }
+        });
+        keys.put(current.activeKid(), new VerificationKey(current.activeKey(), now.plus(rotationOverlap)));
+
+        SecretKey newKey = deriveKey(newSecret);
+        keys.put(newKid, new VerificationKey(newKey, null));
+        keyRing = new KeyRing(newKid, newKey, Map.copyOf(keys));
+    }
+
+    private Key resolve(String kid) {
+        KeyRing ring = keyRing;
+        if (kid == null) {
+            return ring.activeKey();
+        }
+        VerificationKey key = ring.keys().get(kid);
+        if (key == null || (key.validUntil() != null && key.validUntil().isBefore(Instant.now()))) {
+            throw new JwtException("Unknown or retired signing key: " + kid);
+        }
+        return key.key();
+    }
+
+    static SecretKey deriveKey(String secret) {
+        try {
+            byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return Keys.hmacShaKeyFor(sha256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unable to create signing key", e);
+        }
+    }
+
+    private record VerificationKey(SecretKey key, Instant validUntil) {}
+
+    private record KeyRing(String activeKid, SecretKey activeKey, Map<String, VerificationKey> keys) {}
+}
@@ -1,45 +1,34 @@
 package com.omnistore.security;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.Date;
 
-import javax.crypto.SecretKey;
+import org.springframework.stereotype.Component;
 
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 
+@Component
 public class JwtUtil {
 
-    private static final String SECRET_KEY = "your-secret-key"; // Strong secret key
+    private final JwtKeyManager keyManager;
 
-    private static SecretKey getSigningKey() {
-        try {
-            byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(SECRET_KEY.getBytes(StandardCharsets.UTF_8));
-            return Keys.hmacShaKeyFor(sha256);
-        } catch (java.security.NoSuchAlgorithmException e) {
-            throw new RuntimeException("Unable to create signing key", e);
-        }
+    public JwtUtil(JwtKeyManager keyManager) {
+        this.keyManager = keyManager;
     }
 
-    public static String generateToken(String email, String role) {
-        SecretKey key = getSigningKey();
-        return Jwts.builder()
+    public static final String USER_ID_CLAIM = "uid";
+
+    public String generateToken(Long userId, String email, String role) {
+        return keyManager.newBuilder()
                 .setSubject(email)
+                .claim(USER_ID_CLAIM, userId)
                 .claim("role", role) // Add user role as claim
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60)) // 1 hour expiration
-                .signWith(key, SignatureAlgorithm.HS256) // Sign with HS256 algorithm
                 .compact();
     }
 
-    public static Claims parseToken(String token) {
-        SecretKey key = getSigningKey();
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
+    public Claims parseToken(String token) {
+        return keyManager.parser()
                 .parseClaimsJws(token)
                 .getBody();
     }
@@ -0,0 +1,127 @@
+package com.omnistore.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.omnistore.entity.Session;
+import com.omnistore.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Remembers which bearer tokens have a live session row so the auth filter only
+ * hits the sessions table on a miss. Entries are keyed by a SHA-256 of the token
+ * and never outlive the session's expiresAt. They are also capped at maxTtl, which
+ * bounds how long a logout on another node can go unnoticed here.
+ */
+@Component
+public class SessionValidationCache {
+
+    private final SessionRepository sessionRepository;
+    private final Duration maxTtl;
+
+    // token hash -> session expiry (epoch millis)
+    private final Cache<String, Long> validSessions;
+    // token hashes recently found to have no live session
+    private final Cache<String, Boolean> rejectedTokens;
+
+    public SessionValidationCache(SessionRepository sessionRepository,
+                                  @Value("${security.session-cache.max-ttl:5m}") Duration maxTtl,
+                                  @Value("${security.session-cache.maximum-size:100000}") long maximumSize,
+                                  @Value("${security.session-cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.sessionRepository = sessionRepository;
+        this.maxTtl = maxTtl;
+        this.validSessions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new SessionExpiry())
+                .build();
+        this.rejectedTokens = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maximumSize / 10))
+                .expireAfterWrite(negativeTtl)
+                .build();
+    }
+
+    public boolean isValid(String token) {
+        String key = hash(token);
+
+        Long expiresAt = validSessions.getIfPresent(key);
+        if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+            return true;
+        }
+        if (rejectedTokens.getIfPresent(key) != null) {
+            return false;
+        }
+
+        Optional<Session> session = sessionRepository.findByToken(token);
+        if (session.isEmpty() || session.get().isExpired()) {
+            validSessions.invalidate(key);
+            rejectedTokens.put(key, Boolean.TRUE);
+            return false;
+        }
+
+        validSessions.put(key, toEpochMillis(session.get()));
+        return true;
+    }
+
+    public void invalidate(String token) {
+        String key = hash(token);
+        evict(key);
+
+        // a concurrent request may re-cache the row before the delete commits, so evict again afterwards
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(key);
+                }
+            });
+        }
+    }
+
+    private void evict(String key) {
+        validSessions.invalidate(key);
+        rejectedTokens.put(key, Boolean.TRUE);
+    }
+
+    private long toEpochMillis(Session session) {
+        return session.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private class SessionExpiry implements Expiry<String, Long> {
+
+        @Override
+        public long expireAfterCreate(String key, Long expiresAt, long currentTime) {
+            long untilExpiry = Duration.ofMillis(expiresAt - System.currentTimeMillis()).toNanos();
+            return Math.max(0, Math.min(untilExpiry, maxTtl.toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Long expiresAt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, expiresAt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Long expiresAt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.omnistore.entity.User;
 import com.omnistore.repository.SessionRepository;
 import com.omnistore.repository.UserRepository;
 import com.omnistore.security.JwtUtil;
+import com.omnistore.security.SessionValidationCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -24,6 +25,12 @@ public class AuthService {
     @Autowired
     private SessionRepository sessionRepository;
 
+    @Autowired
+    private SessionValidationCache sessionValidationCache;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
     public String login(String email, String password) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -32,7 +39,7 @@ public class AuthService {
             throw new RuntimeException("Invalid credentials");
         }
 
-        String token = JwtUtil.generateToken(user.getEmail(), user.getRole().name());
+        String token = jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole().name());
 
         // Create and save session
         Session session = new Session(user, token, LocalDateTime.now().plusHours(24));
@@ -44,5 +51,6 @@ public class AuthService {
     @Transactional
     public void logout(String token) {
         sessionRepository.deleteByToken(token);
+        sessionValidationCache.invalidate(token);
     }
 }
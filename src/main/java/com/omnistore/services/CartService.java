@@ -3,92 +3,126 @@ package com.omnistore.services;
 import com.omnistore.dto.AddToCartRequestDto;
 import com.omnistore.dto.CartResponseDto;
 import com.omnistore.dto.CartItemResponseDto;
-import com.omnistore.entity.Cart;
-import com.omnistore.entity.CartItem;
+import com.omnistore.dto.CartOperationDto;
+import com.omnistore.dto.CartUpdateRequestDto;
 import com.omnistore.entity.Product;
+import com.omnistore.exception.BadRequestException;
 import com.omnistore.exception.ResourceNotFoundException;
-import com.omnistore.repository.CartRepository;
-import com.omnistore.repository.CartItemRepository;
-import com.omnistore.repository.ProductRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
+    private final CartStore cartStore;
+    private final ProductService productService;
 
-    public CartService(CartRepository cartRepository,
-                       CartItemRepository cartItemRepository,
-                       ProductRepository productRepository) {
-        this.cartRepository = cartRepository;
-        this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
+    public CartService(CartStore cartStore, ProductService productService) {
+        this.cartStore = cartStore;
+        this.productService = productService;
     }
 
-    public Cart addToCart(Long userId, AddToCartRequestDto dto) {
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setUserId(userId);
-                    return cartRepository.save(newCart);
-                });
+    public CartResponseDto addToCart(Long userId, AddToCartRequestDto dto) {
+        // throws if the product does not exist
+        productService.findProductById(dto.getProductId());
+        int quantity = dto.getQuantity() == null ? 1 : dto.getQuantity();
 
-        Product product = productRepository.findById(dto.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + dto.getProductId()));
-
-        CartItem item = new CartItem();
-        item.setCart(cart);
-        item.setProduct(product);
-        item.setQuantity(dto.getQuantity());
-
-        cart.getItems().add(item);
-        cartItemRepository.save(item);
+        // same product again just bumps the existing line
+        CartSnapshot cart = cartStore.update(userId, lines -> lines.merge(dto.getProductId(), quantity, Integer::sum));
+        return toResponse(cart);
+    }
 
-        return cart;
+    // ---------------- BULK UPDATE ----------------
+    // Products are checked up front in one lookup, then every operation is applied in one store write.
+    public CartResponseDto updateCart(Long userId, CartUpdateRequestDto dto) {
+        Set<Long> productIds = new HashSet<>();
+        for (CartOperationDto op : dto.getOperations()) {
+            if (op.getOp() == CartOperationDto.Op.REMOVE) {
+                continue;
+            }
+            if (op.getQuantity() == null) {
+                throw new BadRequestException("Quantity is required for " + op.getOp() + " on product ID: " + op.getProductId());
+            }
+            productIds.add(op.getProductId());
+        }
+        Map<Long, Product> products = productService.findProductsByIds(productIds);
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new ResourceNotFoundException("Product not found with ID: " + productId);
+            }
+        }
+
+        CartSnapshot cart = cartStore.update(userId, lines -> {
+            for (CartOperationDto op : dto.getOperations()) {
+                Long productId = op.getProductId();
+                switch (op.getOp()) {
+                    case REMOVE -> lines.remove(productId);
+                    case ADD, SET -> {
+                        int quantity = op.getOp() == CartOperationDto.Op.ADD
+                                ? lines.getOrDefault(productId, 0) + op.getQuantity()
+                                : op.getQuantity();
+                        if (quantity <= 0) {
+                            lines.remove(productId);
+                        } else {
+                            lines.put(productId, quantity);
+                        }
+                    }
+                }
+            }
+        });
+
+        return toResponse(cart);
     }
 
     public CartResponseDto getCartByUserId(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId)
+        CartSnapshot cart = cartStore.find(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user ID: " + userId));
+        return toResponse(cart);
+    }
+
+    public void removeFromCart(Long userId, Long productId) {
+        CartSnapshot cart = cartStore.find(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user ID: " + userId));
 
-        CartResponseDto response = new CartResponseDto();
-        response.setCartId(cart.getId());
-        response.setUserId(cart.getUserId());
+        if (!cart.lines().containsKey(productId)) {
+            throw new ResourceNotFoundException("Product not found in cart with ID: " + productId);
+        }
 
-        AtomicReference<Double> total = new AtomicReference<>(0.0);
+        cartStore.update(userId, lines -> lines.remove(productId));
+    }
 
-        List<CartItemResponseDto> items = cart.getItems().stream().map(item -> {
+    private CartResponseDto toResponse(CartSnapshot cart) {
+        CartResponseDto response = new CartResponseDto();
+        response.setCartId(cart.cartId());
+        response.setUserId(cart.userId());
+
+        // product details come from the product cache, the store only keeps ids
+        Map<Long, Product> products = productService.findProductsByIds(cart.lines().keySet());
+
+        double total = 0;
+        List<CartItemResponseDto> items = new ArrayList<>(cart.lines().size());
+        for (Map.Entry<Long, Integer> line : cart.lines().entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product == null) {
+                continue;   // product deleted since it was added
+            }
             CartItemResponseDto dto = new CartItemResponseDto();
-            dto.setProductId(item.getProduct().getId());
-            dto.setProductName(item.getProduct().getName());
-            dto.setPrice(item.getProduct().getPrice());
-            dto.setQuantity(item.getQuantity());
-            total.updateAndGet(v -> v + item.getProduct().getPrice() * item.getQuantity());
-            return dto;
-        }).toList();
+            dto.setProductId(product.getId());
+            dto.setProductName(product.getName());
+            dto.setPrice(product.getPrice());
+            dto.setQuantity(line.getValue());
+            total += product.getPrice() * line.getValue();
+            items.add(dto);
+        }
 
         response.setItems(items);
-        response.setTotalAmount(total.get());
+        response.setTotalAmount(total);
 
         return response;
     }
-
-    public void removeFromCart(Long userId, Long productId) {
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user ID: " + userId));
-
-        CartItem itemToRemove = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found in cart with ID: " + productId));
-
-        cart.getItems().remove(itemToRemove);
-        cartItemRepository.delete(itemToRemove);
-        cartRepository.save(cart);
-    }
 }
@@ -0,0 +1,23 @@
+package com.omnistore.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of a cart as kept by a {@link CartStore}: product id to quantity, in the
+ * order lines were added. Product details are resolved separately, so stores only hold ids.
+ */
+public record CartSnapshot(Long cartId, Long userId, Map<Long, Integer> lines) {
+
+    public CartSnapshot {
+        lines = Collections.unmodifiableMap(new LinkedHashMap<>(lines));
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+}
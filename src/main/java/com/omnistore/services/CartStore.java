@@ -0,0 +1,35 @@
+package com.omnistore.services;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Where carts live. Picked with {@code cart.store}: {@code memory} (default) or {@code jpa}.
+ * The contract is key/value per user so a Redis implementation can slot in behind it.
+ */
+public interface CartStore {
+
+    Optional<CartSnapshot> find(Long userId);
+
+    /**
+     * Atomically applies {@code mutation} to a mutable copy of the user's lines (product id to
+     * quantity), creating the cart if needed, and returns the stored result.
+     */
+    CartSnapshot update(Long userId, Consumer<Map<Long, Integer>> mutation);
+
+    // Joins the caller's transaction where the store supports it
+    void delete(Long userId);
+
+    /**
+     * Takes {@code ordered} (product id to quantity) off the user's cart, dropping lines that reach
+     * zero. Lines added or topped up after the order was read stay in the cart. Joins the caller's
+     * transaction where the store supports it, like {@link #delete}.
+     */
+    void removeLines(Long userId, Map<Long, Integer> ordered);
+
+    // what is left of one line after removeLines, null once it is gone
+    static Integer remainingAfter(Integer current, Integer ordered) {
+        return current > ordered ? current - ordered : null;
+    }
+}
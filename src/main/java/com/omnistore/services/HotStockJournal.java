@@ -0,0 +1,119 @@
+package com.omnistore.services;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local log of absolute hot-SKU stock levels, fsynced on every append.
+ * Each record is (productId, available, crc). On recovery the last intact record per
+ * product wins, and a torn tail from a crash mid-write is ignored. The log is truncated
+ * once the same values have been written to the database.
+ */
+public class HotStockJournal implements AutoCloseable {
+
+    private static final int RECORD_SIZE = Long.BYTES * 3;
+
+    private final FileChannel channel;
+
+    public HotStockJournal(Path path) {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open hot stock journal " + path, e);
+        }
+    }
+
+    public synchronized void append(Map<Long, Long> levels) {
+        if (levels.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(levels.size() * RECORD_SIZE);
+        levels.forEach((productId, available) -> {
+            buffer.putLong(productId);
+            buffer.putLong(available);
+            buffer.putLong(checksum(productId, available));
+        });
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write hot stock journal", e);
+        }
+    }
+
+    public synchronized Map<Long, Long> recover() {
+        Map<Long, Long> levels = new HashMap<>();
+        try {
+            channel.position(0);
+            InputStream in = Channels.newInputStream(channel);
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            while (true) {
+                long productId;
+                long available;
+                long crc;
+                try {
+                    productId = data.readLong();
+                    available = data.readLong();
+                    crc = data.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc != checksum(productId, available)) {
+                    break;
+                }
+                levels.put(productId, available);
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read hot stock journal", e);
+        }
+        return levels;
+    }
+
+    public synchronized void truncate() {
+        try {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot truncate hot stock journal", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long checksum(long productId, long available) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2).putLong(productId).putLong(available);
+        crc.update(buffer.array());
+        return crc.getValue();
+    }
+}
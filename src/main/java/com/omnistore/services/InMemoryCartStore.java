@@ -0,0 +1,191 @@
+package com.omnistore.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Carts held in memory, keyed by user id across a fixed number of shards. Every write is an
+ * atomic compute on the user's entry. A cart untouched for {@code cart.memory.ttl} expires.
+ * With {@code cart.memory.snapshot-path} set, all carts are written to disk periodically and
+ * on shutdown and loaded back on startup; without it carts do not survive a restart.
+ *
+ * Single node only: use the jpa store (or a shared Redis store) when scaling out.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryCartStore.class);
+
+    record StoredCart(CartSnapshot cart, long expiresAtMillis) {
+        boolean isExpired(long now) {
+            return expiresAtMillis <= now;
+        }
+    }
+
+    private final List<ConcurrentHashMap<Long, StoredCart>> shards;
+    private final long ttlMillis;
+    private final Path snapshotPath;
+    private final ObjectMapper objectMapper;
+
+    public InMemoryCartStore(@Value("${cart.memory.shards:16}") int shardCount,
+                             @Value("${cart.memory.ttl:PT72H}") Duration ttl,
+                             @Value("${cart.memory.snapshot-path:}") String snapshotPath,
+                             ObjectMapper objectMapper) {
+        this.shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Optional<CartSnapshot> find(Long userId) {
+        StoredCart stored = shard(userId).get(userId);
+        if (stored == null) {
+            return Optional.empty();
+        }
+        if (stored.isExpired(System.currentTimeMillis())) {
+            shard(userId).remove(userId, stored);
+            return Optional.empty();
+        }
+        return Optional.of(stored.cart());
+    }
+
+    @Override
+    public CartSnapshot update(Long userId, Consumer<Map<Long, Integer>> mutation) {
+        return shard(userId).compute(userId, (id, stored) -> {
+            long now = System.currentTimeMillis();
+            Map<Long, Integer> lines = stored == null || stored.isExpired(now)
+                    ? new LinkedHashMap<>()
+                    : new LinkedHashMap<>(stored.cart().lines());
+            mutation.accept(lines);
+            // carts are keyed by user, so the user id doubles as the cart id
+            return new StoredCart(new CartSnapshot(userId, userId, lines), now + ttlMillis);
+        }).cart();
+    }
+
+    @Override
+    public void delete(Long userId) {
+        // a checkout that rolls back must keep its cart
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    shard(userId).remove(userId);
+                }
+            });
+        } else {
+            shard(userId).remove(userId);
+        }
+    }
+
+    @Override
+    public void removeLines(Long userId, Map<Long, Integer> ordered) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    subtract(userId, ordered);
+                }
+            });
+        } else {
+            subtract(userId, ordered);
+        }
+    }
+
+    // on the cart as it is now, not as the checkout read it; an emptied cart goes away
+    private void subtract(Long userId, Map<Long, Integer> ordered) {
+        shard(userId).computeIfPresent(userId, (id, stored) -> {
+            Map<Long, Integer> lines = new LinkedHashMap<>(stored.cart().lines());
+            ordered.forEach((productId, quantity) -> lines.computeIfPresent(productId,
+                    (product, current) -> CartStore.remainingAfter(current, quantity)));
+            return lines.isEmpty()
+                    ? null
+                    : new StoredCart(new CartSnapshot(userId, userId, lines), stored.expiresAtMillis());
+        });
+    }
+
+    // ---------------- EXPIRY ----------------
+    @Scheduled(fixedDelayString = "${cart.memory.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (ConcurrentHashMap<Long, StoredCart> shard : shards) {
+            shard.values().removeIf(stored -> stored.isExpired(now));
+        }
+    }
+
+    // ---------------- SNAPSHOT ----------------
+    @PostConstruct
+    public void loadSnapshot() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        try {
+            List<StoredCart> carts = objectMapper.readValue(snapshotPath.toFile(), new TypeReference<>() {});
+            long now = System.currentTimeMillis();
+            for (StoredCart stored : carts) {
+                if (!stored.isExpired(now)) {
+                    shard(stored.cart().userId()).put(stored.cart().userId(), stored);
+                }
+            }
+            log.info("Loaded {} carts from {}", carts.size(), snapshotPath);
+        } catch (IOException e) {
+            log.warn("Could not load cart snapshot {}, starting empty", snapshotPath, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.memory.snapshot-interval-ms:30000}")
+    public void writeSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        List<StoredCart> carts = new ArrayList<>();
+        shards.forEach(shard -> carts.addAll(shard.values()));
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            // write then rename, so a crash mid-write keeps the previous snapshot
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), carts);
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write cart snapshot {}", snapshotPath, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writeSnapshot();
+    }
+
+    private ConcurrentHashMap<Long, StoredCart> shard(Long userId) {
+        return shards.get(Math.floorMod(Long.hashCode(userId), shards.size()));
+    }
+}
@@ -1,20 +1,107 @@
 package com.omnistore.services;
 
+import com.omnistore.config.CacheConfig;
 import com.omnistore.entity.Product;
+import com.omnistore.exception.ResourceNotFoundException;
 import com.omnistore.repository.ProductRepository;
+import com.omnistore.search.ProductChangedEvent;
+import com.omnistore.search.StockChangedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admin stock updates plus the optional hot-SKU mode.
+ *
+ * For a product flagged {@code hotSku} the database row is not the source of truth while the
+ * flag is on: available stock lives in a {@link StripedStockCounter}, reservations are taken
+ * lock-free in memory, and the absolute level is written back to {@code products.stock} on a
+ * short interval. Levels are fsynced to a local {@link HotStockJournal} in between, and the
+ * journal is replayed on startup.
+ *
+ * A checkout that took hot stock waits in {@link #awaitJournaled} before it commits, so a
+ * reservation is never acknowledged before it is on disk. Waiters share fsyncs (group commit):
+ * whoever gets the journal first writes every level changed so far. Returned stock and admin
+ * level changes are only journaled on the {@code journal-sync-ms} schedule; a crash within that
+ * window can lose a return, which leaves stock too low but never oversells.
+ *
+ * Hot mode assumes a single application node owns the hot SKUs.
+ */
 @Service
 public class InventoryService {
 
+    private static final Logger log = LoggerFactory.getLogger(InventoryService.class);
+
+    // products.stock only: the inventory table (entity Inventory) is not read or written by any
+    // stock path, so updating it from here alone would leave it disagreeing with everything else
+    private static final String FLUSH_SQL =
+            "update products set stock = ?, version = version + 1 where id = ?";
+    private static final String DB_INCREMENT_SQL =
+            "update products set stock = stock + ?, version = version + 1 where id = ? and (hot_sku is null or hot_sku = false)";
+
+    public enum HotReservation { RESERVED, INSUFFICIENT, NOT_HOT }
+
     private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public InventoryService(ProductRepository productRepository) {
+    private final Map<Long, StripedStockCounter> hotCounters = new ConcurrentHashMap<>();
+    private final HotStockJournal journal;
+    private final int stripes;
+    private final long flushIntervalMillis;
+    private final Object flushLock = new Object();
+    // taken after flushLock, never while holding a counter's monitor
+    private final Object journalLock = new Object();
+    private final AtomicLong hotChanges = new AtomicLong();
+    private volatile long journaledChanges;
+    private long lastFlushMillis = System.currentTimeMillis();
+
+    public InventoryService(ProductRepository productRepository,
+                            ProductService productService,
+                            JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            CacheManager cacheManager,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${inventory.hot.journal-path:data/hot-stock.journal}") Path journalPath,
+                            @Value("${inventory.hot.stripes:32}") int stripes,
+                            @Value("${inventory.hot.flush-interval:PT1S}") Duration flushInterval) {
         this.productRepository = productRepository;
+        this.productService = productService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.journal = new HotStockJournal(journalPath);
+        this.stripes = stripes;
+        this.flushIntervalMillis = flushInterval.toMillis();
     }
 
     // ---------------- UPDATE STOCK ----------------
+    // the cached product is dropped by ProductCacheEvictor once this commits
     @Transactional
     public Product updateStock(Long productId, Integer newStock) {
 
@@ -26,14 +113,268 @@ public class InventoryService {
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
         product.setStock(newStock);
+        setHotLevelAfterCommit(productId, newStock);
+
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
+        return saved;
+    }
 
-        return productRepository.save(product);
+    // the next flush writes the counter back, so it has to carry the new level too; only once the
+    // row has it, a save that fails (e.g. on the version a flush bumped) must not leave it in memory
+    private void setHotLevelAfterCommit(Long productId, int newStock) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                StripedStockCounter counter = hotCounters.get(productId);
+                if (counter != null) {
+                    counter.set(newStock);
+                    hotChanges.incrementAndGet();
+                }
+            }
+        });
     }
 
     // ---------------- GET PRODUCT BY ID ----------------
     public Product getProductById(Long productId) {
+        return productService.findProductById(productId);
+    }
 
+    // ---------------- HOT MODE TOGGLE ----------------
+    public Product setHotMode(Long productId, boolean enabled) {
+        synchronized (flushLock) {
+            if (enabled) {
+                enableHotMode(productId);
+            } else {
+                disableHotMode(productId);
+            }
+        }
+        evictProduct(productId);
         return productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
+    }
+
+    private void enableHotMode(Long productId) {
+        if (hotCounters.containsKey(productId)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // the flag update takes the row lock, so in-flight database reservations finish first
+                // and any that start later no longer match the row
+                if (jdbcTemplate.update("update products set hot_sku = true where id = ?", productId) == 0) {
+                    throw new ResourceNotFoundException("Product not found with ID: " + productId);
+                }
+                Integer stock = jdbcTemplate.queryForObject("select stock from products where id = ?", Integer.class, productId);
+                hotCounters.put(productId, new StripedStockCounter(stripes, stock == null ? 0 : stock));
+            });
+        } catch (RuntimeException e) {
+            hotCounters.remove(productId);
+            throw e;
+        }
+    }
+
+    private void disableHotMode(Long productId) {
+        StripedStockCounter counter = hotCounters.get(productId);
+        if (counter == null) {
+            if (jdbcTemplate.update("update products set hot_sku = false where id = ?", productId) == 0) {
+                throw new ResourceNotFoundException("Product not found with ID: " + productId);
+            }
+            return;
+        }
+        // reservers that see the closed counter wait on its monitor, then fall back to the database
+        synchronized (counter) {
+            long remaining = counter.close();
+            jdbcTemplate.update("update products set stock = ?, hot_sku = false, version = version + 1 where id = ?",
+                    remaining, productId);
+            hotCounters.remove(productId);
+        }
+        eventPublisher.publishEvent(new StockChangedEvent(List.of(productId)));
+        // journal records for this SKU are stale now; flushing everything lets us drop them
+        flushToDatabase(true);
+    }
+
+    public boolean isHot(Long productId) {
+        return hotCounters.containsKey(productId);
+    }
+
+    // ---------------- HOT RESERVE / RELEASE ----------------
+    public HotReservation tryReserveHot(Long productId, int quantity) {
+        StripedStockCounter counter = hotCounters.get(productId);
+        if (counter == null) {
+            return HotReservation.NOT_HOT;
+        }
+        if (counter.tryReserve(quantity)) {
+            hotChanges.incrementAndGet();
+            return HotReservation.RESERVED;
+        }
+        if (counter.isClosed()) {
+            synchronized (counter) {
+                // wait for disableHotMode to hand the stock back to the database
+            }
+            return HotReservation.NOT_HOT;
+        }
+        return HotReservation.INSUFFICIENT;
+    }
+
+    // Puts stock back wherever it currently lives. Used outside any transaction.
+    public void returnStock(Long productId, int quantity) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            StripedStockCounter counter = hotCounters.get(productId);
+            if (counter != null) {
+                if (counter.release(quantity)) {
+                    hotChanges.incrementAndGet();
+                    return;
+                }
+                synchronized (counter) {
+                    // closed: wait for the level to land in the database
+                }
+            }
+            if (jdbcTemplate.update(DB_INCREMENT_SQL, quantity, productId) == 1) {
+                eventPublisher.publishEvent(new StockChangedEvent(List.of(productId)));
+                return;
+            }
+        }
+        log.error("Could not return {} units of product {}", quantity, productId);
+    }
+
+    // ---------------- WRITE-BEHIND ----------------
+    @PostConstruct
+    void recoverHotStock() {
+        Map<Long, Long> journaled = journal.recover();
+        if (!journaled.isEmpty()) {
+            List<Map.Entry<Long, Long>> levels = new ArrayList<>(journaled.entrySet());
+            jdbcTemplate.batchUpdate(FLUSH_SQL, levels, levels.size(), (ps, level) -> {
+                ps.setLong(1, level.getValue());
+                ps.setLong(2, level.getKey());
+            });
+            log.info("Recovered {} hot SKU stock levels from journal", levels.size());
+            journal.truncate();
+        }
+
+        jdbcTemplate.query("select id, stock from products where hot_sku = true", rs -> {
+            hotCounters.put(rs.getLong("id"), new StripedStockCounter(stripes, rs.getLong("stock")));
+        });
+    }
+
+    // Sequence number covering every hot change made so far; pass it to awaitJournaled
+    public long hotChangeSequence() {
+        return hotChanges.get();
+    }
+
+    // Returns once every hot change up to the sequence is fsynced. One append covers all waiters
+    // that queued behind it, so concurrent checkouts share a single fsync.
+    public void awaitJournaled(long sequence) {
+        if (journaledChanges >= sequence) {
+            return;
+        }
+        synchronized (journalLock) {
+            if (journaledChanges < sequence) {
+                journalChanges();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.hot.journal-sync-ms:50}")
+    public void syncHotStock() {
+        if (hotCounters.isEmpty()) {
+            return;
+        }
+        synchronized (flushLock) {
+            synchronized (journalLock) {
+                journalChanges();
+            }
+            if (System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis) {
+                flushToDatabase(false);
+            }
+        }
+    }
+
+    // caller holds journalLock
+    private void journalChanges() {
+        // read first: every change counted here is already in the levels read below
+        long upTo = hotChanges.get();
+        Map<Long, Long> changed = new HashMap<>();
+        hotCounters.forEach((productId, counter) -> {
+            if (counter.takeJournalDirty()) {
+                changed.put(productId, counter.available());
+                counter.markFlushDirty();
+            }
+        });
+        try {
+            journal.append(changed);
+        } catch (RuntimeException e) {
+            changed.keySet().forEach(productId -> {
+                StripedStockCounter counter = hotCounters.get(productId);
+                if (counter != null) {
+                    counter.markJournalDirty();
+                }
+            });
+            throw e;
+        }
+        journaledChanges = upTo;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (flushLock) {
+            try {
+                flushToDatabase(true);
+            } finally {
+                journal.close();
+            }
+        }
+    }
+
+    // caller holds flushLock; the journal is held too, so nothing is appended between the
+    // levels read here and the truncate below
+    private void flushToDatabase(boolean all) {
+        synchronized (journalLock) {
+            writeBack(all);
+        }
+    }
+
+    private void writeBack(boolean all) {
+        List<long[]> levels = new ArrayList<>();
+        hotCounters.forEach((productId, counter) -> {
+            if (counter.takeFlushDirty() || all) {
+                levels.add(new long[]{productId, counter.available()});
+            }
+        });
+        lastFlushMillis = System.currentTimeMillis();
+        if (levels.isEmpty()) {
+            if (all) {
+                journal.truncate();
+            }
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, levels, levels.size(), (ps, level) -> {
+                ps.setLong(1, level[1]);
+                ps.setLong(2, level[0]);
+            });
+        } catch (RuntimeException e) {
+            // keep the journal, the next flush retries
+            levels.forEach(level -> {
+                StripedStockCounter counter = hotCounters.get(level[0]);
+                if (counter != null) {
+                    counter.markFlushDirty();
+                }
+            });
+            log.warn("Hot stock flush failed, {} SKUs kept in journal", levels.size(), e);
+            return;
+        }
+
+        // everything in the journal is at least as old as what was just written
+        journal.truncate();
+        eventPublisher.publishEvent(new StockChangedEvent(levels.stream().map(level -> level[0]).toList()));
+    }
+
+    private void evictProduct(Long productId) {
+        Cache products = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (products != null) {
+            products.evict(productId);
+        }
     }
 }
@@ -0,0 +1,106 @@
+package com.omnistore.services;
+
+import com.omnistore.entity.Cart;
+import com.omnistore.entity.CartItem;
+import com.omnistore.repository.CartRepository;
+import com.omnistore.repository.ProductRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// Carts in the carts / cart_items tables, as before the store abstraction
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "jpa")
+public class JpaCartStore implements CartStore {
+
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+
+    public JpaCartStore(CartRepository cartRepository, ProductRepository productRepository) {
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<CartSnapshot> find(Long userId) {
+        return cartRepository.findWithItemsByUserId(userId)
+                .map(cart -> new CartSnapshot(cart.getId(), userId, toLines(cart)));
+    }
+
+    @Override
+    @Transactional
+    public CartSnapshot update(Long userId, Consumer<Map<Long, Integer>> mutation) {
+        Cart cart = cartRepository.findWithItemsByUserId(userId)
+                .orElseGet(() -> {
+                    Cart newCart = new Cart();
+                    newCart.setUserId(userId);
+                    return cartRepository.save(newCart);
+                });
+
+        Map<Long, Integer> lines = toLines(cart);
+        mutation.accept(lines);
+        store(cart, lines);
+
+        return new CartSnapshot(cart.getId(), userId, lines);
+    }
+
+    @Override
+    @Transactional
+    public void delete(Long userId) {
+        cartRepository.findWithItemsByUserId(userId).ifPresent(cart -> cart.getItems().clear());
+    }
+
+    @Override
+    @Transactional
+    public void removeLines(Long userId, Map<Long, Integer> ordered) {
+        cartRepository.findWithItemsByUserId(userId).ifPresent(cart -> {
+            Map<Long, Integer> lines = toLines(cart);
+            ordered.forEach((productId, quantity) -> lines.computeIfPresent(productId,
+                    (product, current) -> CartStore.remainingAfter(current, quantity)));
+            store(cart, lines);
+        });
+    }
+
+    // existing rows are updated or orphaned (duplicates too), new products inserted by reference
+    private void store(Cart cart, Map<Long, Integer> lines) {
+        Map<Long, CartItem> kept = new HashMap<>();
+        Iterator<CartItem> it = cart.getItems().iterator();
+        while (it.hasNext()) {
+            CartItem item = it.next();
+            Long productId = item.getProduct().getId();
+            Integer quantity = lines.get(productId);
+            if (quantity == null || kept.containsKey(productId)) {
+                it.remove();
+                continue;
+            }
+            item.setQuantity(quantity);
+            kept.put(productId, item);
+        }
+        lines.forEach((productId, quantity) -> {
+            if (!kept.containsKey(productId)) {
+                CartItem item = new CartItem();
+                item.setCart(cart);
+                item.setProduct(productRepository.getReferenceById(productId));
+                item.setQuantity(quantity);
+                cart.getItems().add(item);
+            }
+        });
+    }
+
+    private Map<Long, Integer> toLines(Cart cart) {
+        // older carts may hold duplicate rows for one product, they read as one line
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        for (CartItem item : cart.getItems()) {
+            lines.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return lines;
+    }
+}
@@ -1,38 +1,68 @@
 package com.omnistore.services;
 
+import com.omnistore.dto.CursorPageDto;
+import com.omnistore.dto.OrderItemResponseDto;
 import com.omnistore.dto.OrderResponseDto;
 import com.omnistore.dto.PlaceOrderRequestDto;
 import com.omnistore.entity.*;
+import com.omnistore.events.OrderEventType;
+import com.omnistore.events.OutboxService;
 import com.omnistore.exception.BadRequestException;
 import com.omnistore.exception.ResourceNotFoundException;
-import com.omnistore.repository.CartRepository;
+import com.omnistore.repository.OrderItemRepository;
 import com.omnistore.repository.OrderRepository;
+import com.omnistore.repository.ProductRepository;
+import com.omnistore.util.CursorCodec;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 public class OrderService {
 
-    private final OrderRepository orderRepository;
-    private final CartRepository cartRepository;
+    public static final int MAX_HISTORY_PAGE_SIZE = 100;
 
-    public OrderService(OrderRepository orderRepository, CartRepository cartRepository) {
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final CartStore cartStore;
+    private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final OutboxService outboxService;
+
+    public OrderService(OrderRepository orderRepository,
+                        OrderItemRepository orderItemRepository,
+                        CartStore cartStore,
+                        ProductRepository productRepository,
+                        StockReservationService stockReservationService,
+                        OutboxService outboxService) {
         this.orderRepository = orderRepository;
-        this.cartRepository = cartRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.cartStore = cartStore;
+        this.productRepository = productRepository;
+        this.stockReservationService = stockReservationService;
+        this.outboxService = outboxService;
     }
 
+    @Transactional
     public Order placeOrder(Long userId, PlaceOrderRequestDto dto) {
-        Cart cart = cartRepository.findByUserId(userId)
+        CartSnapshot cart = cartStore.find(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user ID: " + userId));
 
-        if (cart.getItems() == null || cart.getItems().isEmpty()) {
+        if (cart.isEmpty()) {
             throw new BadRequestException("Cart is empty");
         }
 
+        // fresh rows, not the product cache: the order is priced from the database
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(cart.lines().keySet()).forEach(product -> products.put(product.getId(), product));
+
         Order order = new Order();
         order.setUserId(userId);
         order.setStatus(OrderStatus.CREATED);
@@ -42,12 +72,16 @@ public class OrderService {
 
         double total = 0;
         List<OrderItem> orderItems = new ArrayList<>();
-        for (CartItem cartItem : cart.getItems()) {
+        for (Map.Entry<Long, Integer> line : cart.lines().entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product == null) {
+                throw new BadRequestException("Product is no longer available: " + line.getKey());
+            }
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
-            orderItem.setProduct(cartItem.getProduct());
-            orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setPrice(cartItem.getProduct().getPrice());
+            orderItem.setProduct(product);
+            orderItem.setQuantity(line.getValue());
+            orderItem.setPrice(product.getPrice());
             total += orderItem.getPrice() * orderItem.getQuantity();
             orderItems.add(orderItem);
         }
@@ -57,60 +91,131 @@ public class OrderService {
 
         Order savedOrder = orderRepository.save(order);
 
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        // throws (and rolls the order back) if any line is out of stock
+        stockReservationService.reserve(savedOrder.getId(), cart.lines());
+
+        // only what was ordered: lines added since the cart was read above stay for the next checkout
+        cartStore.removeLines(userId, cart.lines());
+        outboxService.record(OrderEventType.ORDER_PLACED, savedOrder.getId());
 
         return savedOrder;
     }
 
-    public List<OrderResponseDto> getOrdersByUserId(Long userId) {
-        List<Order> orders = orderRepository.findByUserId(userId);
-        return orders.stream().map(order -> {
-            OrderResponseDto dto = new OrderResponseDto();
-            dto.setOrderId(order.getId());
-            dto.setUserId(order.getUserId());
-            dto.setTotalAmount(order.getTotalAmount());
-            dto.setStatus(order.getStatus().name());
-            dto.setCreatedAt(order.getCreatedAt());
-            return dto;
-        }).collect(Collectors.toList());
+    // ---------------- ORDER HISTORY ----------------
+    @Transactional(readOnly = true)
+    public CursorPageDto<OrderResponseDto> getOrderHistory(Long userId, String cursor, int size, boolean expandItems) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        // fetch one extra row to know whether another page exists
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<OrderResponseDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = orderRepository.findHistoryPage(userId, limit);
+        } else {
+            String[] position = CursorCodec.decode(cursor, 2);
+            try {
+                rows = orderRepository.findHistoryPageAfter(userId,
+                        LocalDateTime.parse(position[0]), Long.valueOf(position[1]), limit);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderResponseDto> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        if (expandItems && !page.isEmpty()) {
+            Map<Long, OrderResponseDto> byId = new HashMap<>();
+            for (OrderResponseDto order : page) {
+                order.setItems(new ArrayList<>());
+                byId.put(order.getOrderId(), order);
+            }
+            for (OrderItemResponseDto item : orderItemRepository.findSummariesByOrderIds(byId.keySet())) {
+                byId.get(item.getOrderId()).getItems().add(item);
+            }
+        }
+
+        if (!hasMore) {
+            return new CursorPageDto<>(page, null);
+        }
+        OrderResponseDto last = page.get(pageSize - 1);
+        return new CursorPageDto<>(page, CursorCodec.encode(last.getCreatedAt(), last.getOrderId()));
     }
 
-    public Order updateStatusAfterPayment(Long orderId, boolean success) {
-        Order order = findOrderById(orderId);
-        order.setStatus(success ? OrderStatus.PAID : OrderStatus.CANCELLED);
-        return orderRepository.save(order);
+    @Transactional
+    public void updateStatusAfterPayment(Long orderId, boolean success) {
+        // reservations are committed / released by OrderStockListener off the request path
+        if (success) {
+            transition(orderId, OrderStatus.PAID);
+        } else {
+            cancelUnpaid(orderId);
+        }
     }
 
-    public Order shipOrder(Long orderId) {
-        Order order = findOrderById(orderId);
-        if (order.getStatus() != OrderStatus.PAID) {
-            throw new BadRequestException("Order cannot be shipped. Current status: " + order.getStatus());
+    // CREATED -> CANCELLED only: a failed payment must not cancel an order that got paid in the meantime
+    @Transactional
+    public boolean cancelUnpaid(Long orderId) {
+        if (orderRepository.transition(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED) == 0) {
+            return false;
         }
-        order.setStatus(OrderStatus.SHIPPED);
-        return orderRepository.save(order);
+        outboxService.record(OrderEventType.ORDER_CANCELLED, orderId);
+        return true;
     }
 
+    @Transactional
+    public Order shipOrder(Long orderId) {
+        transition(orderId, OrderStatus.SHIPPED);
+        return findOrderById(orderId);
+    }
+
+    @Transactional
     public Order deliverOrder(Long orderId) {
-        Order order = findOrderById(orderId);
-        if (order.getStatus() != OrderStatus.SHIPPED) {
-            throw new BadRequestException("Order cannot be delivered. Current status: " + order.getStatus());
-        }
-        order.setStatus(OrderStatus.DELIVERED);
-        return orderRepository.save(order);
+        transition(orderId, OrderStatus.DELIVERED);
+        return findOrderById(orderId);
     }
 
+    @Transactional
     public Order cancelOrder(Long orderId) {
-        Order order = findOrderById(orderId);
-        if (order.getStatus() != OrderStatus.CREATED && order.getStatus() != OrderStatus.PAID) {
-            throw new BadRequestException("Order cannot be cancelled. Current status: " + order.getStatus());
+        transition(orderId, OrderStatus.CANCELLED);
+        return findOrderById(orderId);
+    }
+
+    // ---------------- STATUS TRANSITIONS ----------------
+    // Every move is one conditional UPDATE guarded by OrderStatus.allowedFrom, so concurrent
+    // webhooks and admin actions cannot overwrite each other. No order is loaded to make the move.
+    @Transactional
+    public boolean tryTransition(Long orderId, OrderStatus target) {
+        if (target.allowedFrom().isEmpty()
+                || orderRepository.transition(orderId, target.allowedFrom(), target) == 0) {
+            return false;
+        }
+        OrderEventType event = switch (target) {
+            case PAID -> OrderEventType.ORDER_PAID;
+            case SHIPPED -> OrderEventType.ORDER_SHIPPED;
+            case CANCELLED -> OrderEventType.ORDER_CANCELLED;
+            default -> null;
+        };
+        if (event != null) {
+            outboxService.record(event, orderId);
+        }
+        return true;
+    }
+
+    @Transactional
+    public void transition(Long orderId, OrderStatus target) {
+        if (tryTransition(orderId, target)) {
+            return;
+        }
+        // only the refusal path reads the status, to explain it
+        OrderStatus current = orderRepository.findStatusById(orderId);
+        if (current == null) {
+            throw new ResourceNotFoundException("Order not found with ID: " + orderId);
         }
-        order.setStatus(OrderStatus.CANCELLED);
-        return orderRepository.save(order);
+        throw new BadRequestException("Order cannot move to " + target + ". Current status: " + current);
     }
 
     private Order findOrderById(Long orderId) {
-        return orderRepository.findById(orderId)
+        return orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with ID: " + orderId));
     }
 }
@@ -1,133 +1,184 @@
 package com.omnistore.services;
 
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.Set;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.omnistore.entity.Order;
+import com.omnistore.entity.OrderStatus;
 import com.omnistore.entity.Payment;
 import com.omnistore.exception.ResourceNotFoundException;
+import com.omnistore.payment.MockPaymentGateway;
+import com.omnistore.payment.PaymentGatewayRegistry;
+import com.omnistore.payment.PaymentIntentResult;
+import com.omnistore.payment.StripePaymentGateway;
 import com.omnistore.repository.OrderRepository;
 import com.omnistore.repository.PaymentRepository;
-import com.stripe.Stripe;
-import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
-import com.stripe.param.PaymentIntentCreateParams;
 
 @Service
 public class PaymentService {
 
-    private final PaymentRepository paymentRepository;
-    private final OrderRepository orderRepository;
+    private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
 
-    @Value("${stripe.secret.key}")
-    private String stripeSecretKey;
+    // payment statuses after which the provider side cannot change any more
+    public static final Set<String> SETTLED_STATUSES = Set.of("SUCCESS", "succeeded", "FAILED", "canceled");
+    public static final Set<String> PAID_STATUSES = Set.of("SUCCESS", "succeeded");
+    public static final Set<String> FAILED_STATUSES = Set.of("FAILED", "canceled");
 
-    public PaymentService(PaymentRepository paymentRepository, OrderRepository orderRepository) {
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final PaymentGatewayRegistry gateways;
+    private final TransactionTemplate transactionTemplate;
+
+    public PaymentService(PaymentRepository paymentRepository,
+                          OrderRepository orderRepository,
+                          OrderService orderService,
+                          PaymentGatewayRegistry gateways,
+                          TransactionTemplate transactionTemplate) {
         this.paymentRepository = paymentRepository;
         this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.gateways = gateways;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    // Existing mock payment method (can be removed or kept for other payment types)
+    // One-shot charge through the mock provider. The provider answers first, then the payment
+    // row, order status and outbox event commit together.
     public Payment pay(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with ID: " + orderId));
 
-        Payment payment = new Payment();
-        payment.setOrderId(orderId);
-        payment.setAmount(order.getTotalAmount());
-        payment.setProvider("MOCK_GATEWAY");
-        payment.setStatus("INITIATED");
-        payment.setCreatedAt(LocalDateTime.now());
-
-        // mock response
-        boolean success = new Random().nextInt(10) < 9; // 90% success
-        payment.setStatus(success ? "SUCCESS" : "FAILED");
-
-        return paymentRepository.save(payment);
+        long amountInCents = toCents(order.getTotalAmount());
+        PaymentIntentResult intent = gateways.call(MockPaymentGateway.PROVIDER, "charge",
+                gateway -> gateway.createIntent(orderId, amountInCents, "usd"));
+        boolean success = "succeeded".equals(intent.status());
+
+        return transactionTemplate.execute(status -> {
+            Payment payment = new Payment();
+            payment.setOrderId(orderId);
+            payment.setAmount(order.getTotalAmount());
+            payment.setProvider(MockPaymentGateway.PROVIDER);
+            payment.setStatus(success ? "SUCCESS" : "FAILED");
+            payment.setCreatedAt(LocalDateTime.now());
+
+            Payment saved = paymentRepository.save(payment);
+            orderService.updateStatusAfterPayment(orderId, success);
+            return saved;
+        });
     }
 
-    @Transactional
-    public Payment createStripePaymentIntent(Long orderId) throws StripeException {
-        Stripe.apiKey = stripeSecretKey;
-
+    // Stripe is called with no transaction open, so a slow provider never pins a pooled
+    // connection; the payment row is written in a short transaction once the call returns.
+    public Payment createStripePaymentIntent(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with ID: " + orderId));
 
         // Check if a PaymentIntent already exists for this order
         // This prevents creating multiple payment intents for the same order
-        Payment existingPayment = paymentRepository.findByOrderIdAndProvider(orderId, "STRIPE")
+        Payment existingPayment = paymentRepository.findByOrderIdAndProvider(orderId, StripePaymentGateway.PROVIDER)
                 .orElse(null);
 
         if (existingPayment != null && existingPayment.getStripePaymentIntentId() != null) {
             // Retrieve existing PaymentIntent to get the latest client secret
-            PaymentIntent paymentIntent = PaymentIntent.retrieve(existingPayment.getStripePaymentIntentId());
-            existingPayment.setStripeClientSecret(paymentIntent.getClientSecret());
-            return paymentRepository.save(existingPayment);
+            String intentId = existingPayment.getStripePaymentIntentId();
+            PaymentIntentResult intent = gateways.call(StripePaymentGateway.PROVIDER, "retrieve payment intent",
+                    gateway -> gateway.retrieveIntent(intentId));
+            existingPayment.setStripeClientSecret(intent.clientSecret());
+            return transactionTemplate.execute(status -> paymentRepository.save(existingPayment));
         }
 
         // Stripe requires amount in cents
-        long amountInCents = (long) (order.getTotalAmount() * 100);
-
-        PaymentIntentCreateParams createParams = PaymentIntentCreateParams.builder()
-                .setCurrency("usd")
-                .setAmount(amountInCents)
-                .putMetadata("order_id", orderId.toString())
-                .build();
-
-        PaymentIntent paymentIntent = PaymentIntent.create(createParams);
-
-        Payment payment = new Payment();
-        payment.setOrderId(orderId);
-        payment.setAmount(order.getTotalAmount());
-        payment.setProvider("STRIPE");
-        payment.setStatus(paymentIntent.getStatus()); // e.g., requires_payment_method
-        payment.setStripePaymentIntentId(paymentIntent.getId());
-        payment.setStripeClientSecret(paymentIntent.getClientSecret());
-        payment.setCreatedAt(LocalDateTime.now());
-
-        return paymentRepository.save(payment);
+        long amountInCents = toCents(order.getTotalAmount());
+
+        PaymentIntentResult intent = gateways.call(StripePaymentGateway.PROVIDER, "create payment intent",
+                gateway -> gateway.createIntent(orderId, amountInCents, "usd"));
+
+        return transactionTemplate.execute(status -> {
+            // a concurrent request for the same order got the same intent back (idempotency key), so keep one row
+            Payment payment = paymentRepository.findByOrderIdAndProvider(orderId, StripePaymentGateway.PROVIDER)
+                    .orElseGet(Payment::new);
+            payment.setOrderId(orderId);
+            payment.setAmount(order.getTotalAmount());
+            payment.setProvider(StripePaymentGateway.PROVIDER);
+            payment.setStatus(intent.status()); // e.g., requires_payment_method
+            payment.setStripePaymentIntentId(intent.id());
+            payment.setStripeClientSecret(intent.clientSecret());
+            if (payment.getCreatedAt() == null) {
+                payment.setCreatedAt(LocalDateTime.now());
+            }
+            return paymentRepository.save(payment);
+        });
+    }
+
+    public Payment confirmStripePayment(String paymentIntentId) {
+        // unknown ids are rejected before spending a provider call on them
+        Payment payment = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Payment not found for PaymentIntent ID: " + paymentIntentId));
+
+        // asked of whichever provider created the intent
+        PaymentIntentResult intent = gateways.call(payment.getProvider(), "retrieve payment intent",
+                gateway -> gateway.retrieveIntent(paymentIntentId));
+
+        return transactionTemplate.execute(status -> applyIntentStatus(paymentIntentId, intent.status()));
     }
 
-    @Transactional
-    public Payment confirmStripePayment(String paymentIntentId) throws StripeException {
-        Stripe.apiKey = stripeSecretKey;
+    // Webhook path, called inside the inbox transaction. Returns false when the intent is not one of ours.
+    // Stripe does not guarantee delivery order, so once a payment is settled only a redelivery of
+    // that same outcome is applied (a no-op); a late event with any other status is ignored.
+    public boolean applyWebhookIntentStatus(String paymentIntentId, String intentStatus) {
+        Payment payment = paymentRepository.findByStripePaymentIntentId(paymentIntentId).orElse(null);
+        if (payment == null) {
+            return false;
+        }
+        if (SETTLED_STATUSES.contains(payment.getStatus())
+                && !payment.getStatus().equals(paymentStatusFor(intentStatus))) {
+            log.info("Ignoring {} for payment {}, already settled as {}", intentStatus, paymentIntentId, payment.getStatus());
+            return true;
+        }
+        applyIntentStatus(paymentIntentId, intentStatus);
+        return true;
+    }
 
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
+    private Payment applyIntentStatus(String paymentIntentId, String intentStatus) {
         Payment payment = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment not found for PaymentIntent ID: " + paymentIntentId));
 
         // Update payment status based on Stripe's PaymentIntent status
-        payment.setStatus(paymentIntent.getStatus());
+        payment.setStatus(paymentStatusFor(intentStatus));
         paymentRepository.save(payment);
 
         // If payment succeeded, update order status
-        if ("succeeded".equals(paymentIntent.getStatus())) {
-            orderRepository.findById(payment.getOrderId()).ifPresent(order -> {
-                order.setStatus(com.omnistore.entity.OrderStatus.PAID);
-                orderRepository.save(order);
-            });
-        } else if ("requires_action".equals(paymentIntent.getStatus()) || "requires_confirmation".equals(paymentIntent.getStatus())) {
-            // Handle cases where further action is needed from the customer
-            // This might involve redirecting the customer to a 3D Secure page, etc.
-            // For now, we'll just update the status.
-            payment.setStatus("REQUIRES_ACTION");
-            paymentRepository.save(payment);
-        } else if ("canceled".equals(paymentIntent.getStatus())) {
-            payment.setStatus("FAILED"); // Or a more specific "CANCELED" status
-            paymentRepository.save(payment);
+        if ("succeeded".equals(intentStatus)) {
+            // CREATED -> PAID; a repeated confirm or webhook finds it already paid and changes nothing
+            if (!orderService.tryTransition(payment.getOrderId(), OrderStatus.PAID)) {
+                log.warn("Payment {} succeeded but order {} is {}", paymentIntentId, payment.getOrderId(),
+                        orderRepository.findStatusById(payment.getOrderId()));
+            }
+        } else if ("canceled".equals(intentStatus)) {
+            // same as a failed mock payment: the unpaid order is cancelled and its stock returned
+            orderService.cancelUnpaid(payment.getOrderId());
         }
 
         return payment;
     }
 
-    // Method to handle webhook events (to be implemented later)
-    public void handleStripeWebhook(String payload, String sigHeader) {
-        // This will be more complex, involving signature verification and event parsing
-        // For now, it's a placeholder
-        System.out.println("Received Stripe webhook event.");
+    // Payment.status stored for a provider intent status
+    public static String paymentStatusFor(String intentStatus) {
+        return switch (intentStatus) {
+            // further action is needed from the customer, e.g. a 3D Secure redirect
+            case "requires_action", "requires_confirmation" -> "REQUIRES_ACTION";
+            case "canceled" -> "FAILED";
+            default -> intentStatus;
+        };
+    }
+
+    // rounded, not truncated: 19.99 * 100 is 1998.9999999999998 in double arithmetic
+    private static long toCents(Double amount) {
+        return Math.round(amount * 100);
     }
 }
@@ -0,0 +1,46 @@
+package com.omnistore.services;
+
+import com.omnistore.config.CacheConfig;
+import com.omnistore.search.ProductChangedEvent;
+import com.omnistore.search.StockChangedEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Drops changed products from the product cache once the write has committed.
+ *
+ * Evicting inside the transaction is not enough: a findProductById running between the evict
+ * and the commit re-loads the old row and caches it for the whole TTL. Writes made outside a
+ * transaction are already visible, so their events evict straight away.
+ */
+@Service
+public class ProductCacheEvictor {
+
+    private final CacheManager cacheManager;
+
+    public ProductCacheEvictor(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(List.of(event.productId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        evict(event.productIds());
+    }
+
+    private void evict(Collection<Long> productIds) {
+        Cache products = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (products != null) {
+            productIds.forEach(products::evict);
+        }
+    }
+}
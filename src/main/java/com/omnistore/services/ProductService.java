@@ -1,21 +1,88 @@
 package com.omnistore.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.omnistore.dto.CursorPageDto;
 import com.omnistore.dto.ProductRequestDto;
 import com.omnistore.dto.ProductResponseDto;
+import com.omnistore.config.CacheConfig;
 import com.omnistore.entity.Product;
+import com.omnistore.exception.ResourceNotFoundException;
 import com.omnistore.repository.ProductRepository;
+import com.omnistore.search.ProductChangedEvent;
+import com.omnistore.util.CursorCodec;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class ProductService {
 
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final ProductRepository productRepository;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ObjectMapper objectMapper, CacheManager cacheManager,
+                          ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Cached instances are shared and detached: callers may link them to other entities but must not mutate them
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS, key = "#productId")
+    public Product findProductById(Long productId) {
+        return productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
+    }
+
+    // Bulk form of findProductById: cache hits first, the misses in one query (and then cached).
+    // Unknown ids are simply absent from the result.
+    public Map<Long, Product> findProductsByIds(Collection<Long> productIds) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        Map<Long, Product> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long productId : productIds) {
+            Product cached = cache == null ? null : cache.get(productId, Product.class);
+            if (cached != null) {
+                found.put(productId, cached);
+            } else {
+                misses.add(productId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (Product product : productRepository.findAllById(misses)) {
+                found.put(product.getId(), product);
+                if (cache != null) {
+                    cache.put(product.getId(), product);
+                }
+            }
+        }
+        return found;
     }
 
     public ProductResponseDto createProduct(ProductRequestDto dto) {
@@ -25,14 +92,70 @@ public class ProductService {
         product.setPrice(dto.getPrice());
 
         Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved.getId()));
         return mapToResponse(saved);
     }
 
-    public List<ProductResponseDto> getAllProducts() {
-        return productRepository.findAll()
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    // Response rows for the given ids in the same order, through the product cache; unknown ids are skipped
+    public List<ProductResponseDto> getProductSummaries(List<Long> productIds) {
+        Map<Long, Product> found = findProductsByIds(productIds);
+        List<ProductResponseDto> rows = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            Product product = found.get(productId);
+            if (product != null) {
+                rows.add(mapToResponse(product));
+            }
+        }
+        return rows;
+    }
+
+    public CursorPageDto<ProductResponseDto> getProducts(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // fetch one extra row to know whether another page exists
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<ProductResponseDto> rows = cursor == null || cursor.isBlank()
+                ? productRepository.findSummaryPage(limit)
+                : productRepository.findSummaryPageAfter(CursorCodec.decodeLong(cursor), limit);
+
+        if (rows.size() <= pageSize) {
+            return new CursorPageDto<>(rows, null);
+        }
+
+        List<ProductResponseDto> page = rows.subList(0, pageSize);
+        return new CursorPageDto<>(page, CursorCodec.encode(page.get(pageSize - 1).getId()));
+    }
+
+    // Writes the whole catalog as newline-delimited JSON, one row at a time off a JDBC cursor
+    @Transactional(readOnly = true)
+    public void exportCatalog(OutputStream target, boolean gzip) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(target, EXPORT_BUFFER_SIZE) : null;
+        OutputStream out = new BufferedOutputStream(gzip ? gzipStream : target, EXPORT_BUFFER_SIZE);
+
+        SequenceWriter writer = objectMapper.writerFor(ProductResponseDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+
+        try (Stream<ProductResponseDto> rows = productRepository.streamAllSummaries()) {
+            Iterator<ProductResponseDto> it = rows.iterator();
+            boolean any = false;
+            while (it.hasNext()) {
+                writer.write(it.next());
+                any = true;
+            }
+            writer.close();
+            if (any) {
+                out.write('\n');
+            }
+        }
+
+        out.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        target.flush();
     }
 
     private ProductResponseDto mapToResponse(Product product) {
@@ -42,6 +165,8 @@ public class ProductService {
         dto.setDescription(product.getDescription());
         dto.setPrice(product.getPrice());
         dto.setActive(product.getActive());
+        dto.setRatings(product.getRatingSum(), product.getRatingCount(), product.getRating1(), product.getRating2(),
+                product.getRating3(), product.getRating4(), product.getRating5());
         return dto;
     }
 }
@@ -0,0 +1,62 @@
+package com.omnistore.services;
+
+import com.omnistore.config.CacheConfig;
+import com.omnistore.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Recomputes the per-product rating aggregates from product_reviews, for when the incremental
+ * updates in ReviewService have drifted (reviews deleted by hand, data imported around the service).
+ *
+ * Works through product id ranges of chunk-size, one short transaction each, so only that many
+ * product rows are locked at a time. A review committed while its range is being rewritten may be
+ * missed until the next run.
+ */
+@Component
+public class RatingRebuildJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingRebuildJob.class);
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final int chunkSize;
+
+    public RatingRebuildJob(ProductRepository productRepository,
+                            TransactionTemplate transactionTemplate,
+                            CacheManager cacheManager,
+                            @Value("${reviews.rating-rebuild.chunk-size:1000}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${reviews.rating-rebuild.cron:0 30 3 * * *}")
+    public void rebuild() {
+        Long maxId = productRepository.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        long updated = 0;
+        for (long afterId = 0; afterId < maxId; afterId += chunkSize) {
+            long from = afterId;
+            long upTo = Math.min(afterId + chunkSize, maxId);
+            Integer rows = transactionTemplate.execute(status -> productRepository.rebuildRatings(from, upTo));
+            updated += rows == null ? 0 : rows;
+        }
+        // cached products carry the old aggregates
+        Cache products = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (products != null) {
+            products.clear();
+        }
+        log.info("Rebuilt rating aggregates of {} products", updated);
+    }
+}
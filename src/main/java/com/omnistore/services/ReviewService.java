@@ -1,5 +1,7 @@
 package com.omnistore.services;
 
+import com.omnistore.dto.CursorPageDto;
+import com.omnistore.dto.ReviewResponseDto;
 import com.omnistore.entity.Product;
 import com.omnistore.entity.ProductReview;
 import com.omnistore.entity.User;
@@ -8,24 +10,38 @@ import com.omnistore.exception.ResourceNotFoundException;
 import com.omnistore.repository.ProductRepository;
 import com.omnistore.repository.ProductReviewRepository;
 import com.omnistore.repository.UserRepository;
+import com.omnistore.search.ProductChangedEvent;
+import com.omnistore.util.CursorCodec;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @Service
 public class ReviewService {
 
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final ProductReviewRepository reviewRepository;
+    private final ProductService productService;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ReviewService(ProductReviewRepository reviewRepository,
+                         ProductService productService,
                          ProductRepository productRepository,
-                         UserRepository userRepository) {
+                         UserRepository userRepository,
+                         ApplicationEventPublisher eventPublisher) {
         this.reviewRepository = reviewRepository;
+        this.productService = productService;
         this.productRepository = productRepository;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -33,8 +49,7 @@ public class ReviewService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + userId));
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
+        Product product = productService.findProductById(productId);
 
         if (rating < 1 || rating > 5) {
             throw new BadRequestException("Rating must be between 1 and 5");
@@ -46,10 +61,52 @@ public class ReviewService {
         review.setRating(rating);
         review.setComment(comment);
 
-        return reviewRepository.save(review);
+        ProductReview saved = reviewRepository.save(review);
+        // the aggregates commit (or roll back) with the review itself
+        productRepository.incrementRating(productId, rating);
+        // the cached product and the rating facet carry the aggregates; both are refreshed after commit
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
+        return saved;
     }
 
-    public List<ProductReview> getReviewsByProduct(Long productId) {
-        return reviewRepository.findByProductId(productId);
+    // ---------------- REVIEW LISTING ----------------
+    // sort is "newest" or "rating" (highest first); the cursor is only valid for the sort it came from
+    @Transactional(readOnly = true)
+    public CursorPageDto<ReviewResponseDto> getReviewsByProduct(Long productId, String sort, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // fetch one extra row to know whether another page exists
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        boolean byRating = switch (sort) {
+            case "newest" -> false;
+            case "rating" -> true;
+            default -> throw new BadRequestException("Unsupported sort: " + sort);
+        };
+
+        List<ReviewResponseDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = byRating
+                    ? reviewRepository.findTopRatedPage(productId, limit)
+                    : reviewRepository.findNewestPage(productId, limit);
+        } else {
+            String[] position = CursorCodec.decode(cursor, 2);
+            try {
+                rows = byRating
+                        ? reviewRepository.findTopRatedPageAfter(productId,
+                                Integer.valueOf(position[0]), Long.valueOf(position[1]), limit)
+                        : reviewRepository.findNewestPageAfter(productId,
+                                LocalDateTime.parse(position[0]), Long.valueOf(position[1]), limit);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        if (rows.size() <= pageSize) {
+            return new CursorPageDto<>(rows, null);
+        }
+        List<ReviewResponseDto> page = rows.subList(0, pageSize);
+        ReviewResponseDto last = page.get(pageSize - 1);
+        return new CursorPageDto<>(page, byRating
+                ? CursorCodec.encode(last.getRating(), last.getId())
+                : CursorCodec.encode(last.getCreatedAt(), last.getId()));
     }
 }
@@ -17,21 +17,28 @@ public class ShipmentService {
 
     private final ShipmentRepository shipmentRepository;
     private final OrderRepository orderRepository;
+    private final OrderService orderService;
 
-    public ShipmentService(ShipmentRepository shipmentRepository, OrderRepository orderRepository) {
+    public ShipmentService(ShipmentRepository shipmentRepository,
+                           OrderRepository orderRepository,
+                           OrderService orderService) {
         this.shipmentRepository = shipmentRepository;
         this.orderRepository = orderRepository;
+        this.orderService = orderService;
     }
 
     @Transactional
     public Shipment createShipment(Long orderId, String trackingNumber, String carrier) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new ResourceNotFoundException("Order not found with ID: " + orderId));
-
         if (shipmentRepository.findByOrderId(orderId).isPresent()) {
             throw new BadRequestException("Shipment already exists for this order");
         }
 
+        // PAID -> SHIPPED as one conditional update; throws if the order is missing or not paid
+        orderService.transition(orderId, OrderStatus.SHIPPED);
+
+        Order order = orderRepository.findWithItemsById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with ID: " + orderId));
+
         Shipment shipment = new Shipment();
         shipment.setOrder(order);
         shipment.setTrackingNumber(trackingNumber);
@@ -39,12 +46,10 @@ public class ShipmentService {
         shipment.setStatus("IN_TRANSIT");
         shipment.setShippedAt(LocalDateTime.now());
 
-        order.setStatus(OrderStatus.SHIPPED);
-        orderRepository.save(order);
-
         return shipmentRepository.save(shipment);
     }
 
+    @Transactional(readOnly = true)
     public Shipment getShipmentByOrderId(Long orderId) {
         return shipmentRepository.findByOrderId(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Shipment not found for order ID: " + orderId));
@@ -52,17 +57,23 @@ public class ShipmentService {
 
     @Transactional
     public Shipment updateShipmentStatus(Long shipmentId, String status) {
-        Shipment shipment = shipmentRepository.findById(shipmentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Shipment not found with ID: " + shipmentId));
+        Shipment shipment = findShipmentById(shipmentId);
 
         shipment.setStatus(status);
 
         if ("DELIVERED".equalsIgnoreCase(status)) {
             shipment.setEstimatedDelivery(LocalDateTime.now());
-            shipment.getOrder().setStatus(OrderStatus.DELIVERED);
-            orderRepository.save(shipment.getOrder());
+            // flushes the shipment and detaches it; save below merges it back with the fresh order
+            orderService.transition(shipment.getOrder().getId(), OrderStatus.DELIVERED);
         }
 
-        return shipmentRepository.save(shipment);
+        shipmentRepository.save(shipment);
+        // re-read so the response carries the order's new status and its items
+        return findShipmentById(shipmentId);
+    }
+
+    private Shipment findShipmentById(Long shipmentId) {
+        return shipmentRepository.findWithOrderById(shipmentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shipment not found with ID: " + shipmentId));
     }
 }
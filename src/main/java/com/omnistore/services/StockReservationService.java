@@ -0,0 +1,300 @@
+package com.omnistore.services;
+
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.entity.Payment;
+import com.omnistore.entity.ReservationStatus;
+import com.omnistore.entity.StockReservation;
+import com.omnistore.events.OrderEventType;
+import com.omnistore.events.OutboxService;
+import com.omnistore.exception.BadRequestException;
+import com.omnistore.payment.PaymentGatewayRegistry;
+import com.omnistore.payment.PaymentIntentResult;
+import com.omnistore.repository.OrderRepository;
+import com.omnistore.repository.PaymentRepository;
+import com.omnistore.repository.StockReservationRepository;
+import com.omnistore.search.StockChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Holds stock for an order between checkout and payment.
+ *
+ * Stock is taken with conditional decrements ({@code stock >= qty}) sent as one JDBC batch,
+ * so concurrent buyers of the same SKU never oversell and never retry: a decrement either
+ * applies or matches no row. Lines are applied in product id order so two carts sharing
+ * SKUs always lock the rows in the same order. SKUs in hot mode skip the row entirely and
+ * are reserved against {@link InventoryService}'s in-memory counters, and the checkout only
+ * commits once those reservations are journaled.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationService.class);
+
+    private static final String DECREMENT_SQL =
+            "update products set stock = stock - ?, version = version + 1 where id = ? and stock >= ? and (hot_sku is null or hot_sku = false)";
+    private static final String INCREMENT_SQL =
+            "update products set stock = stock + ?, version = version + 1 where id = ? and (hot_sku is null or hot_sku = false)";
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    // provider statuses (as stored on Payment) that no longer hold an order's stock at the TTL
+    private static final Set<String> ABANDONED_PAYMENT_STATUSES = Set.of("requires_payment_method", "FAILED");
+
+    private final StockReservationRepository reservationRepository;
+    private final OrderRepository orderRepository;
+    private final PaymentRepository paymentRepository;
+    private final PaymentGatewayRegistry gateways;
+    private final InventoryService inventoryService;
+    private final OutboxService outboxService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration reservationTtl;
+
+    public StockReservationService(StockReservationRepository reservationRepository,
+                                   OrderRepository orderRepository,
+                                   PaymentRepository paymentRepository,
+                                   PaymentGatewayRegistry gateways,
+                                   InventoryService inventoryService,
+                                   OutboxService outboxService,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${inventory.reservation.ttl:PT15M}") Duration reservationTtl) {
+        this.reservationRepository = reservationRepository;
+        this.orderRepository = orderRepository;
+        this.paymentRepository = paymentRepository;
+        this.gateways = gateways;
+        this.inventoryService = inventoryService;
+        this.outboxService = outboxService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.reservationTtl = reservationTtl;
+    }
+
+    // ---------------- RESERVE ----------------
+    // Joins the caller's transaction: if any line is short the whole checkout rolls back.
+    // Hot SKUs are taken from memory first and handed back if the transaction rolls back.
+    @Transactional
+    public List<StockReservation> reserve(Long orderId, Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        List<Map.Entry<Long, Integer>> hotTaken = new ArrayList<>();
+        returnStockOnRollback(hotTaken);
+
+        List<Map.Entry<Long, Integer>> dbLines = new ArrayList<>(lines.size());
+        for (Map.Entry<Long, Integer> line : lines) {
+            switch (inventoryService.tryReserveHot(line.getKey(), line.getValue())) {
+                case RESERVED -> hotTaken.add(line);
+                case INSUFFICIENT -> throw new BadRequestException("Insufficient stock for product ID: " + line.getKey());
+                case NOT_HOT -> dbLines.add(line);
+            }
+        }
+
+        if (!dbLines.isEmpty()) {
+            int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, dbLines, dbLines.size(), (ps, line) -> {
+                ps.setInt(1, line.getValue());
+                ps.setLong(2, line.getKey());
+                ps.setInt(3, line.getValue());
+            })[0];
+
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] != 0) {
+                    continue;
+                }
+                // no row matched: either short, or the SKU was switched to hot mode meanwhile
+                Map.Entry<Long, Integer> line = dbLines.get(i);
+                if (inventoryService.tryReserveHot(line.getKey(), line.getValue()) != InventoryService.HotReservation.RESERVED) {
+                    throw shortage(line.getKey());
+                }
+                hotTaken.add(line);
+            }
+        }
+        if (!hotTaken.isEmpty()) {
+            journalBeforeCommit(inventoryService.hotChangeSequence());
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(reservationTtl);
+        List<StockReservation> reservations = new ArrayList<>(lines.size());
+        for (Map.Entry<Long, Integer> line : lines) {
+            reservations.add(new StockReservation(orderId, line.getKey(), line.getValue(), expiresAt));
+        }
+
+        // the cached products are dropped by ProductCacheEvictor once this commits
+        eventPublisher.publishEvent(new StockChangedEvent(List.copyOf(quantities.keySet())));
+        return reservationRepository.saveAll(reservations);
+    }
+
+    // ---------------- COMMIT ----------------
+    // Payment went through: the stock is sold and no longer subject to expiry.
+    @Transactional
+    public void commit(Long orderId) {
+        reservationRepository.updateStatusByOrderId(orderId, ReservationStatus.RESERVED, ReservationStatus.COMMITTED);
+    }
+
+    // ---------------- RELEASE ----------------
+    // Returns stock for a cancelled or unpaid order. Safe to call more than once.
+    @Transactional
+    public void release(Long orderId) {
+        List<StockReservation> reservations = reservationRepository.lockByOrderIdAndStatusIn(
+                orderId, EnumSet.of(ReservationStatus.RESERVED, ReservationStatus.COMMITTED));
+        if (reservations.isEmpty()) {
+            return;
+        }
+
+        reservations.sort((a, b) -> a.getProductId().compareTo(b.getProductId()));
+        int[] updated = jdbcTemplate.batchUpdate(INCREMENT_SQL, reservations, reservations.size(), (ps, reservation) -> {
+            ps.setInt(1, reservation.getQuantity());
+            ps.setLong(2, reservation.getProductId());
+        })[0];
+
+        // rows that did not match belong to hot SKUs, their stock goes back to memory once we commit
+        List<Map.Entry<Long, Integer>> hotLines = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                StockReservation reservation = reservations.get(i);
+                hotLines.add(Map.entry(reservation.getProductId(), reservation.getQuantity()));
+            }
+        }
+        if (!hotLines.isEmpty()) {
+            returnStockAfterCommit(hotLines);
+        }
+
+        reservations.forEach(reservation -> reservation.setStatus(ReservationStatus.RELEASED));
+        List<Long> productIds = reservations.stream().map(StockReservation::getProductId).toList();
+        eventPublisher.publishEvent(new StockChangedEvent(productIds));
+    }
+
+    // ---------------- EXPIRE ----------------
+    // An order whose payment is still in flight at the provider (or already went through) is not
+    // cancelled at the TTL: its hold is extended by another TTL and the payment settles it, through
+    // the webhook, a confirm or reconciliation. Only abandoned or failed payments let it expire.
+    @Scheduled(fixedDelayString = "${inventory.reservation.sweep-interval-ms:60000}")
+    public void expireStaleReservations() {
+        List<Long> orderIds;
+        int processed;
+        do {
+            orderIds = reservationRepository.findOrderIdsExpiredBefore(
+                    ReservationStatus.RESERVED, LocalDateTime.now(), PageRequest.of(0, SWEEP_BATCH_SIZE));
+            processed = 0;
+            for (Long orderId : orderIds) {
+                try {
+                    // the provider is asked before any transaction is opened
+                    if (paymentInFlight(orderId)) {
+                        transactionTemplate.executeWithoutResult(status -> reservationRepository.extendExpiry(
+                                orderId, ReservationStatus.RESERVED, LocalDateTime.now().plus(reservationTtl)));
+                    } else {
+                        transactionTemplate.executeWithoutResult(status -> expire(orderId));
+                    }
+                    processed++;
+                } catch (RuntimeException e) {
+                    log.warn("Could not expire reservations for order {}", orderId, e);
+                }
+            }
+            // stop when the backlog is drained or nothing in the batch could be processed
+        } while (orderIds.size() == SWEEP_BATCH_SIZE && processed > 0);
+    }
+
+    private boolean paymentInFlight(Long orderId) {
+        for (Payment payment : paymentRepository.findNotFailedByOrderId(orderId, PaymentService.FAILED_STATUSES)) {
+            if (PaymentService.SETTLED_STATUSES.contains(payment.getStatus())) {
+                // settled and not failed: paid, the order just has not caught up yet
+                return true;
+            }
+            String intentId = payment.getStripePaymentIntentId();
+            if (intentId == null) {
+                continue;
+            }
+            try {
+                PaymentIntentResult intent = gateways.call(payment.getProvider(), "check payment intent before expiry",
+                        gateway -> gateway.retrieveIntent(intentId));
+                if (!ABANDONED_PAYMENT_STATUSES.contains(PaymentService.paymentStatusFor(intent.status()))) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                // cannot tell, so keep the stock rather than risk cancelling a charged order
+                log.warn("Could not check payment intent {} of order {}, holding its stock", intentId, orderId, e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void expire(Long orderId) {
+        // only an order that is still unpaid loses its stock, a concurrent payment wins the race
+        if (orderRepository.transition(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED) == 1) {
+            release(orderId);
+            // released right here, the event is for everyone else (the stock listener's repeat is a no-op)
+            outboxService.record(OrderEventType.ORDER_CANCELLED, orderId);
+            return;
+        }
+
+        OrderStatus status = orderRepository.findStatusById(orderId);
+        if (status == null || status == OrderStatus.CANCELLED) {
+            release(orderId);
+        } else {
+            commit(orderId);
+        }
+    }
+
+    // rows created before products got a stock default still hold NULL, which no decrement matches;
+    // that is a missing stock level, not a shortage
+    private BadRequestException shortage(Long productId) {
+        List<Integer> stock = jdbcTemplate.queryForList("select stock from products where id = ?", Integer.class, productId);
+        if (!stock.isEmpty() && stock.get(0) == null) {
+            return new BadRequestException("No stock level set for product ID: " + productId);
+        }
+        return new BadRequestException("Insufficient stock for product ID: " + productId);
+    }
+
+    private void returnStockOnRollback(List<Map.Entry<Long, Integer>> hotTaken) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    hotTaken.forEach(line -> inventoryService.returnStock(line.getKey(), line.getValue()));
+                }
+            }
+        });
+    }
+
+    // the checkout is not acknowledged until the hot stock it took is on disk
+    private void journalBeforeCommit(long sequence) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                inventoryService.awaitJournaled(sequence);
+            }
+        });
+    }
+
+    private void returnStockAfterCommit(List<Map.Entry<Long, Integer>> hotLines) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                hotLines.forEach(line -> inventoryService.returnStock(line.getKey(), line.getValue()));
+            }
+        });
+    }
+}
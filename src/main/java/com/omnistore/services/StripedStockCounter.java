@@ -0,0 +1,140 @@
+package com.omnistore.services;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Available stock for one hot SKU, split across cache-line padded stripes.
+ *
+ * A reservation CASes down a single stripe (picked by thread), so buyers on different
+ * stripes never contend. When no single stripe can cover the quantity the slow path
+ * gathers all stripes under the monitor. A stripe never goes negative, so the counter
+ * cannot oversell.
+ */
+public class StripedStockCounter {
+
+    // 8 longs = 64 bytes, keeps every stripe on its own cache line
+    private static final int PAD = 8;
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+
+    private final AtomicBoolean journalDirty = new AtomicBoolean();
+    private final AtomicBoolean flushDirty = new AtomicBoolean();
+    private volatile boolean closed;
+
+    public StripedStockCounter(int stripes, long initial) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PAD);
+        spread(initial);
+    }
+
+    public boolean tryReserve(int quantity) {
+        if (closed) {
+            return false;
+        }
+        int start = (int) (Thread.currentThread().threadId() % stripes);
+        for (int i = 0; i < stripes; i++) {
+            int index = ((start + i) % stripes) * PAD;
+            long current = cells.get(index);
+            while (current >= quantity) {
+                if (cells.compareAndSet(index, current, current - quantity)) {
+                    markDirty();
+                    return true;
+                }
+                current = cells.get(index);
+            }
+        }
+        return reserveAcrossStripes(quantity);
+    }
+
+    // releases are rare (cancel / expiry), so they take the monitor to never race close()
+    public synchronized boolean release(int quantity) {
+        if (closed) {
+            return false;
+        }
+        int index = (int) (Thread.currentThread().threadId() % stripes) * PAD;
+        cells.addAndGet(index, quantity);
+        markDirty();
+        return true;
+    }
+
+    // under the monitor: set(), close() and the slow path drain every stripe to 0 before
+    // spreading the level again, and a sum taken in between would read 0 or a partial level.
+    // Fast-path reservations only lower single stripes, so they cannot skew the snapshot.
+    public synchronized long available() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    public synchronized void set(long value) {
+        drain();
+        spread(value);
+        markDirty();
+    }
+
+    // stops reservations and returns whatever stock was left
+    public synchronized long close() {
+        closed = true;
+        return drain();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    boolean takeJournalDirty() {
+        return journalDirty.getAndSet(false);
+    }
+
+    boolean takeFlushDirty() {
+        return flushDirty.getAndSet(false);
+    }
+
+    void markJournalDirty() {
+        journalDirty.set(true);
+    }
+
+    void markFlushDirty() {
+        flushDirty.set(true);
+    }
+
+    private synchronized boolean reserveAcrossStripes(int quantity) {
+        if (closed) {
+            return false;
+        }
+        long gathered = drain();
+        boolean reserved = gathered >= quantity;
+        spread(reserved ? gathered - quantity : gathered);
+        if (reserved) {
+            markDirty();
+        }
+        return reserved;
+    }
+
+    private long drain() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.getAndSet(i * PAD, 0);
+        }
+        return sum;
+    }
+
+    private void spread(long value) {
+        long share = value / stripes;
+        long remainder = value % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.addAndGet(i * PAD, share + (i < remainder ? 1 : 0));
+        }
+    }
+
+    private void markDirty() {
+        // plain read first so the hot path does not write a shared line on every reservation
+        if (!journalDirty.get()) {
+            journalDirty.set(true);
+        }
+    }
+}
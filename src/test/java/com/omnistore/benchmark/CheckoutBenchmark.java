@@ -0,0 +1,139 @@
+package com.omnistore.benchmark;
+
+import com.omnistore.OmniStoreApplication;
+import com.omnistore.dto.PlaceOrderRequestDto;
+import com.omnistore.entity.Product;
+import com.omnistore.repository.ProductRepository;
+import com.omnistore.services.CartStore;
+import com.omnistore.services.OrderService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout throughput for large carts against in-memory H2, with JDBC batching off
+ * (jdbcBatchSize=1) and on. Carts use the jpa store so the cart-item deletes are counted. Statements per order come from Hibernate statistics and are
+ * printed at the end of each trial; the stock reservation batch goes through JdbcTemplate
+ * and adds one more round trip that is not counted there.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.omnistore.benchmark.CheckoutBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CheckoutBenchmark {
+
+    private static final long USER_ID = 1L;
+
+    @Param({"10", "50"})
+    public int cartLines;
+
+    @Param({"1", "50"})
+    public int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private CartStore cartStore;
+    private Statistics statistics;
+    private List<Product> products;
+    private PlaceOrderRequestDto request;
+
+    // only the placeOrder call is counted, not the cart refill around it
+    private long statementsBefore;
+    private long insertsBefore;
+    private long orders;
+    private long statements;
+    private long inserts;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(OmniStoreApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:checkout;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--cart.store=jpa",
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize,
+                        "--stripe.secret.key=sk_test_benchmark",
+                        "--inventory.hot.journal-path=target/benchmark-hot-stock.journal",
+                        "--logging.level.root=WARN");
+
+        orderService = context.getBean(OrderService.class);
+        cartStore = context.getBean(CartStore.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        products = new ArrayList<>();
+        for (int i = 0; i < cartLines; i++) {
+            Product product = new Product();
+            product.setName("Bench product " + i);
+            product.setPrice(10.0 + i);
+            product.setStock(Integer.MAX_VALUE);
+            products.add(productRepository.save(product));
+        }
+
+        request = new PlaceOrderRequestDto();
+    }
+
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        cartStore.update(USER_ID, lines -> products.forEach(product -> lines.put(product.getId(), 1)));
+        statementsBefore = statistics.getPrepareStatementCount();
+        insertsBefore = statistics.getEntityInsertCount();
+    }
+
+    @Benchmark
+    public Long placeOrder() {
+        return orderService.placeOrder(USER_ID, request).getId();
+    }
+
+    @TearDown(Level.Invocation)
+    public void countStatements() {
+        orders++;
+        statements += statistics.getPrepareStatementCount() - statementsBefore;
+        inserts += statistics.getEntityInsertCount() - insertsBefore;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        if (orders > 0) {
+            System.out.printf("%ncartLines=%d jdbcBatchSize=%d: %.1f statements/order, %.1f entity inserts/order%n",
+                    cartLines, jdbcBatchSize,
+                    (double) statements / orders, (double) inserts / orders);
+        }
+        context.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CheckoutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
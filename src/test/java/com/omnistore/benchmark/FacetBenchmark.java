@@ -0,0 +1,101 @@
+package com.omnistore.benchmark;
+
+import com.omnistore.search.BrowseQuery;
+import com.omnistore.search.BrowseResult;
+import com.omnistore.search.CatalogFacetIndex;
+import com.omnistore.search.FacetSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Browse latency with all facet counts (p50/p99 in the SampleTime output) over a synthetic catalog:
+ * 200 categories of skewed size, two to four per product, 80% of products in stock. The query is
+ * "in A and B, in stock, under $50" for a random pair of the larger categories.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.omnistore.benchmark.FacetBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class FacetBenchmark {
+
+    private static final int CATEGORIES = 200;
+    private static final double ZIPF_SHIFT = 5;
+
+    @Param({"1000000"})
+    public int products;
+
+    private CatalogFacetIndex index;
+    private BrowseQuery[] queries;
+    private int next;
+
+    @Setup
+    public void buildIndex() {
+        SplittableRandom random = new SplittableRandom(17);
+        index = new CatalogFacetIndex();
+        long started = System.nanoTime();
+        for (int id = 1; id <= products; id++) {
+            List<Long> categories = new ArrayList<>(4);
+            int count = 2 + random.nextInt(3);
+            while (categories.size() < count) {
+                long category = category(random);
+                if (!categories.contains(category)) {
+                    categories.add(category);
+                }
+            }
+            double price = Math.exp(random.nextDouble() * Math.log(1000));
+            int ratings = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(50);
+            long ratingSum = ratings * (long) (1 + random.nextInt(5));
+            index.upsert(new FacetSource((long) id, price, true, random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(100),
+                    ratingSum, ratings), categories);
+        }
+        System.out.printf("%nindexed %d products in %d ms%n", index.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        queries = new BrowseQuery[256];
+        for (int i = 0; i < queries.length; i++) {
+            long a = 1 + random.nextInt(20);
+            long b = a + 1 + random.nextInt(20);
+            queries[i] = new BrowseQuery(List.of(a, b), 0, 3, null, true, -1, 20);
+        }
+    }
+
+    @Benchmark
+    public BrowseResult browse() {
+        return index.browse(queries[next++ & (queries.length - 1)]);
+    }
+
+    // category ids 1..CATEGORIES with density 1/(rank + ZIPF_SHIFT), so a few are large
+    private static long category(SplittableRandom random) {
+        double span = Math.log((CATEGORIES + ZIPF_SHIFT) / ZIPF_SHIFT);
+        int rank = (int) (ZIPF_SHIFT * Math.exp(random.nextDouble() * span) - ZIPF_SHIFT);
+        return 1 + Math.min(rank, CATEGORIES - 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FacetBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.omnistore.benchmark;
+
+import com.omnistore.services.StripedStockCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reservations per second on a single SKU with 64 buyers: the striped hot-SKU counter
+ * versus one shared CAS cell and a plain lock (the in-process stand-in for a row lock).
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.omnistore.benchmark.HotStockBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class HotStockBenchmark {
+
+    // large enough that no run sells out
+    private static final long STOCK = Long.MAX_VALUE / 4;
+
+    private StripedStockCounter striped;
+    private AtomicLong singleCell;
+    private long locked;
+
+    @Setup
+    public void setUp() {
+        striped = new StripedStockCounter(32, STOCK);
+        singleCell = new AtomicLong(STOCK);
+        locked = STOCK;
+    }
+
+    @Benchmark
+    public boolean stripedCounter() {
+        return striped.tryReserve(1);
+    }
+
+    @Benchmark
+    public boolean singleCas() {
+        long current = singleCell.get();
+        while (current >= 1) {
+            if (singleCell.compareAndSet(current, current - 1)) {
+                return true;
+            }
+            current = singleCell.get();
+        }
+        return false;
+    }
+
+    @Benchmark
+    public synchronized boolean lockedCounter() {
+        if (locked < 1) {
+            return false;
+        }
+        locked--;
+        return true;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HotStockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
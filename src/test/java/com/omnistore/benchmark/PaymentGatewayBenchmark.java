@@ -0,0 +1,78 @@
+package com.omnistore.benchmark;
+
+import com.omnistore.payment.MockPaymentGateway;
+import com.omnistore.payment.PaymentGatewayRegistry;
+import com.omnistore.payment.PaymentIntentResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mock-provider charges per second through PaymentGatewayRegistry with 1000 concurrent callers
+ * and 30 ms mean provider latency (20 ms base + 10 ms exponential tail).
+ *
+ * Throughput is capped by the bulkhead at max-concurrent / latency. With the shipped default of
+ * payment.gateway.max-concurrent=20 that is about 650 calls/s, and callers beyond it are turned
+ * away after bulkhead-wait; this run uses the per-provider override
+ * payment.gateway.mock-gateway.max-concurrent=1000 so the registry itself is what is measured.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.omnistore.benchmark.PaymentGatewayBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(1000)
+@Fork(1)
+public class PaymentGatewayBenchmark {
+
+    private final AtomicLong orderIds = new AtomicLong();
+
+    private PaymentGatewayRegistry registry;
+
+    @Setup
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("payment.gateway.mock-gateway.max-concurrent", "1000");
+        MockPaymentGateway gateway = new MockPaymentGateway(42, Duration.ofMillis(20), Duration.ofMillis(10), 0.1, 0.0);
+        registry = new PaymentGatewayRegistry(List.of(gateway), environment);
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public PaymentIntentResult charge() {
+        long orderId = orderIds.incrementAndGet();
+        return registry.call(MockPaymentGateway.PROVIDER, "charge",
+                gateway -> gateway.createIntent(orderId, 1999, "usd"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PaymentGatewayBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
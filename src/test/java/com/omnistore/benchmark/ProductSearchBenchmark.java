@@ -0,0 +1,123 @@
+package com.omnistore.benchmark;
+
+import com.omnistore.search.ProductSearchIndex;
+import com.omnistore.search.SearchDocument;
+import com.omnistore.search.SearchQuery;
+import com.omnistore.search.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency distribution (p50/p99 in the SampleTime output) over a synthetic catalog.
+ * Content words follow a Zipf-Mandelbrot distribution, so the most common one is in about one
+ * product in six, and about a third of the words are stop words. Queries are drawn from the
+ * same distribution, with a half-typed last word and filters on half of them.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.omnistore.benchmark.ProductSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class ProductSearchBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final double ZIPF_SHIFT = 10;
+    private static final int CATEGORIES = 200;
+    private static final String[] STOP_WORDS = {"the", "and", "with", "for", "of", "a", "in", "to"};
+
+    @Param({"1000000"})
+    public int products;
+
+    private ProductSearchIndex index;
+    private SearchQuery[] queries;
+    private int next;
+
+    @Setup
+    public void buildIndex() {
+        SplittableRandom random = new SplittableRandom(7);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(random);
+        }
+
+        index = new ProductSearchIndex();
+        for (long id = 1; id <= products; id++) {
+            long category = 1 + random.nextInt(CATEGORIES);
+            index.upsert(new SearchDocument(id, text(random, words, 4), text(random, words, 15),
+                    1 + random.nextInt(50_000) / 100.0, random.nextInt(10) != 0,
+                    List.of(category), List.of("category " + words[(int) category])));
+        }
+        index.trimToSize();
+
+        List<SearchQuery> mix = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            String text = text(random, words, 1 + random.nextInt(3));
+            // cut the last word, as if the user is still typing
+            text = text.substring(0, Math.max(1, text.length() - random.nextInt(3)));
+            boolean filtered = random.nextBoolean();
+            mix.add(new SearchQuery(text,
+                    filtered ? 1L + random.nextInt(CATEGORIES) : null,
+                    null,
+                    filtered ? 50.0 : null,
+                    true, 0, 20));
+        }
+        queries = mix.toArray(new SearchQuery[0]);
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return index.search(queries[next++ & (queries.length - 1)]);
+    }
+
+    // word ranks with density 1/(rank + ZIPF_SHIFT), sampled by inverting the CDF
+    private static String text(SplittableRandom random, String[] words, int length) {
+        StringBuilder text = new StringBuilder();
+        double span = Math.log((words.length + ZIPF_SHIFT) / ZIPF_SHIFT);
+        for (int i = 0; i < length; i++) {
+            String word;
+            if (random.nextInt(3) == 0) {
+                word = STOP_WORDS[random.nextInt(STOP_WORDS.length)];
+            } else {
+                int rank = (int) (ZIPF_SHIFT * Math.exp(random.nextDouble() * span) - ZIPF_SHIFT);
+                word = words[Math.min(rank, words.length - 1)];
+            }
+            text.append(i == 0 ? "" : " ").append(word);
+        }
+        return text.toString();
+    }
+
+    private static String word(SplittableRandom random) {
+        char[] letters = new char[3 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+package com.omnistore.benchmark;
+
+import com.omnistore.search.SuggestionTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-keystroke suggestion latency (p50/p99 in the SampleTime output) over a synthetic catalog
+ * of product names with skewed popularity. Every query is a name or one of its later words,
+ * typed one to eight characters in, which is what a search box sends.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.omnistore.benchmark.SuggestBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class SuggestBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final double ZIPF_SHIFT = 10;
+
+    @Param({"1000000"})
+    public int products;
+
+    private SuggestionTrie trie;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void buildTrie() {
+        SplittableRandom random = new SplittableRandom(11);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(random);
+        }
+
+        String[] names = new String[products];
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
+        for (int id = 0; id < products; id++) {
+            names[id] = name(random, words);
+            // a few products sell a lot, most hardly at all
+            long weight = (long) (1 / (random.nextDouble() + 1e-4));
+            builder.add(SuggestionTrie.Kind.PRODUCT, id, names[id], weight);
+        }
+        long started = System.nanoTime();
+        trie = builder.build();
+        System.out.printf("%nbuilt %d suggestions, %d nodes in %d ms%n", trie.size(), trie.nodeCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            String name = names[random.nextInt(products)].toLowerCase();
+            List<Integer> starts = new ArrayList<>(List.of(0));
+            for (int c = 1; c < name.length(); c++) {
+                if (name.charAt(c - 1) == ' ') {
+                    starts.add(c);
+                }
+            }
+            String from = name.substring(starts.get(random.nextInt(starts.size())));
+            queries[i] = from.substring(0, Math.min(from.length(), 1 + random.nextInt(8)));
+        }
+    }
+
+    @Benchmark
+    public List<SuggestionTrie.Suggestion> suggest() {
+        return trie.suggest(queries[next++ & (queries.length - 1)], 10);
+    }
+
+    // two to five words, ranks with density 1/(rank + ZIPF_SHIFT) as in ProductSearchBenchmark
+    private static String name(SplittableRandom random, String[] words) {
+        StringBuilder name = new StringBuilder();
+        double span = Math.log((words.length + ZIPF_SHIFT) / ZIPF_SHIFT);
+        int length = 2 + random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            int rank = (int) (ZIPF_SHIFT * Math.exp(random.nextDouble() * span) - ZIPF_SHIFT);
+            String word = words[Math.min(rank, words.length - 1)];
+            name.append(i == 0 ? "" : " ").append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return name.toString();
+    }
+
+    private static String word(SplittableRandom random) {
+        char[] letters = new char[3 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SuggestBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,149 @@
+package com.omnistore.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.omnistore.entity.OutboxEvent;
+import com.omnistore.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// against the real database: claiming, leasing and marking each commit on their own
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OutboxDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    // what the listeners saw, in delivery order
+    private final List<OrderEvent> delivered = new CopyOnWriteArrayList<>();
+    private final Set<Long> failingOrders = ConcurrentHashMap.newKeySet();
+
+    private OutboxService outboxService;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxService = new OutboxService(outboxEventRepository, objectMapper);
+        dispatcher = new OutboxDispatcher(outboxEventRepository, event -> {
+            OrderEvent orderEvent = (OrderEvent) event;
+            if (failingOrders.contains(orderEvent.orderId())) {
+                throw new IllegalStateException("listener down");
+            }
+            delivered.add(orderEvent);
+        }, transactionTemplate, objectMapper, 100, MAX_ATTEMPTS, Duration.ofSeconds(5), Duration.ofDays(7));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        outboxEventRepository.deleteAll();
+    }
+
+    @Test
+    void testDispatch_DeliversEachOrdersEventsInSequence() {
+        record(OrderEventType.ORDER_PLACED, 1L);
+        record(OrderEventType.ORDER_PLACED, 2L);
+        record(OrderEventType.ORDER_PAID, 1L);
+        record(OrderEventType.ORDER_SHIPPED, 1L);
+
+        dispatchRepeatedly();
+
+        assertEquals(List.of(OrderEventType.ORDER_PLACED, OrderEventType.ORDER_PAID, OrderEventType.ORDER_SHIPPED),
+                typesFor(1L));
+        assertEquals(List.of(OrderEventType.ORDER_PLACED), typesFor(2L));
+        assertTrue(outboxEventRepository.findAll().stream().allMatch(e -> e.getPublishedAt() != null));
+    }
+
+    @Test
+    void testDispatch_RetriesAfterListenerFailureAndHoldsLaterEvents() {
+        record(OrderEventType.ORDER_PLACED, 1L);
+        record(OrderEventType.ORDER_PAID, 1L);
+        failingOrders.add(1L);
+
+        dispatcher.dispatch();
+
+        // PAID must not overtake the failed PLACED
+        assertTrue(delivered.isEmpty());
+        assertEquals(1, eventOf(OrderEventType.ORDER_PLACED, 1L).getAttempts());
+        assertNull(eventOf(OrderEventType.ORDER_PLACED, 1L).getLeasedUntil());
+
+        failingOrders.clear();
+        dispatchRepeatedly();
+
+        assertEquals(List.of(OrderEventType.ORDER_PLACED, OrderEventType.ORDER_PAID), typesFor(1L));
+        assertNotNull(eventOf(OrderEventType.ORDER_PLACED, 1L).getPublishedAt());
+        assertNotNull(eventOf(OrderEventType.ORDER_PAID, 1L).getPublishedAt());
+    }
+
+    @Test
+    void testDispatch_GivesUpAndParksTheOrder() {
+        record(OrderEventType.ORDER_PLACED, 1L);
+        record(OrderEventType.ORDER_PAID, 1L);
+        record(OrderEventType.ORDER_PLACED, 2L);
+        failingOrders.add(1L);
+
+        for (int i = 0; i < MAX_ATTEMPTS + 2; i++) {
+            dispatcher.dispatch();
+        }
+        OutboxEvent dead = eventOf(OrderEventType.ORDER_PLACED, 1L);
+        assertEquals(MAX_ATTEMPTS, dead.getAttempts());
+
+        // order 2 went through; order 1 stays parked behind its dead event even once its listener recovers
+        failingOrders.clear();
+        dispatchRepeatedly();
+
+        assertEquals(List.of(OrderEventType.ORDER_PLACED), typesFor(2L));
+        assertTrue(typesFor(1L).isEmpty());
+        assertNull(eventOf(OrderEventType.ORDER_PAID, 1L).getPublishedAt());
+
+        // resetting the dead event un-parks the order
+        dead.setAttempts(0);
+        outboxEventRepository.save(dead);
+        dispatchRepeatedly();
+
+        assertEquals(List.of(OrderEventType.ORDER_PLACED, OrderEventType.ORDER_PAID), typesFor(1L));
+    }
+
+    // a poll claims one event per order, so a backlog of several per order takes several polls
+    private void dispatchRepeatedly() {
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch();
+        }
+    }
+
+    private void record(OrderEventType type, Long orderId) {
+        transactionTemplate.executeWithoutResult(status -> outboxService.record(type, orderId));
+    }
+
+    private List<OrderEventType> typesFor(Long orderId) {
+        return delivered.stream().filter(e -> e.orderId().equals(orderId)).map(OrderEvent::type).toList();
+    }
+
+    private OutboxEvent eventOf(OrderEventType type, Long orderId) {
+        return outboxEventRepository.findAll().stream()
+                .filter(e -> e.getAggregateId().equals(orderId) && e.getEventType().equals(type.name()))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,125 @@
+package com.omnistore.idempotency;
+
+import com.omnistore.security.AuthenticatedUser;
+import com.omnistore.security.JwtAuthenticationToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyFilterTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotencyFilter(new InMemoryIdempotencyStore(Duration.ofHours(1)),
+                List.of("/api/orders/place"), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testReplay_ReturnsStoredResponse() throws Exception {
+        MockHttpServletResponse first = send("key-1", "{}", chain(0));
+        MockHttpServletResponse second = send("key-1", "{}", chain(0));
+
+        assertEquals(1, executions.get());
+        assertEquals(201, second.getStatus());
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testDifferentBody_Rejected() throws Exception {
+        send("key-1", "{\"addressId\":1}", chain(0));
+        MockHttpServletResponse reused = send("key-1", "{\"addressId\":2}", chain(0));
+
+        assertEquals(422, reused.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testServerError_NotStored() throws Exception {
+        FilterChain failing = (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(500);
+        };
+        send("key-1", "{}", failing);
+        send("key-1", "{}", failing);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void testConcurrentDuplicates_RunOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(pool.submit(() -> {
+                    start.await();
+                    return send("key-1", "{}", chain(200));
+                }));
+            }
+            start.countDown();
+            for (Future<MockHttpServletResponse> response : responses) {
+                assertEquals(201, response.get(10, TimeUnit.SECONDS).getStatus());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, executions.get());
+    }
+
+    private FilterChain chain(long delayMillis) {
+        return (req, res) -> {
+            executions.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"id\":" + executions.get() + "}");
+        };
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        // the filter reads the user from the security context, which is per thread
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(
+                new AuthenticatedUser(1L, "user@example.com", "USER"), List.of()));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/orders/place");
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,124 @@
+package com.omnistore.payment;
+
+import com.omnistore.entity.Order;
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.entity.Payment;
+import com.omnistore.repository.OrderRepository;
+import com.omnistore.repository.PaymentRepository;
+import com.omnistore.services.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+// against the real database: what the provider answers has to take the payment out of the next scan
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CancelledPaymentScanTest {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // intent status and call counts at the provider, keyed by intent id
+    private final Map<String, String> intents = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> retrieved = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> cancelled = new ConcurrentHashMap<>();
+
+    private PaymentGatewayRegistry gateways;
+    private PaymentReconciliationJob job;
+
+    @BeforeEach
+    void setUp() {
+        PaymentGateway stripe = new PaymentGateway() {
+            @Override
+            public String provider() {
+                return "STRIPE";
+            }
+
+            @Override
+            public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+                retrieved.computeIfAbsent(paymentIntentId, id -> new AtomicInteger()).incrementAndGet();
+                return new PaymentIntentResult(paymentIntentId, intents.get(paymentIntentId), null);
+            }
+
+            @Override
+            public PaymentIntentResult cancelIntent(String paymentIntentId) {
+                cancelled.computeIfAbsent(paymentIntentId, id -> new AtomicInteger()).incrementAndGet();
+                intents.put(paymentIntentId, "canceled");
+                return new PaymentIntentResult(paymentIntentId, "canceled", null);
+            }
+        };
+        gateways = new PaymentGatewayRegistry(List.of(stripe), new MockEnvironment());
+        job = new PaymentReconciliationJob(paymentRepository, mock(OrderService.class), gateways,
+                transactionTemplate, new SimpleMeterRegistry(),
+                true, 100, Duration.ofMinutes(5), Duration.ofDays(7), 4, 240_000, Duration.ofMinutes(15));
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateways.shutdown();
+        paymentRepository.deleteAll();
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void testReconcile_AbandonedIntentOfCancelledOrderIsPolledOnce() {
+        Long paymentId = cancelledOrderPayment("pi_abandoned", "requires_payment_method", LocalDateTime.now().minusMinutes(10));
+        cancelledOrderPayment("pi_old", "requires_payment_method", LocalDateTime.now().minusDays(8));
+
+        for (int run = 0; run < 5; run++) {
+            job.reconcile();
+        }
+
+        assertEquals(1, retrieved.get("pi_abandoned").get());
+        assertEquals(1, cancelled.get("pi_abandoned").get());
+        assertEquals("FAILED", paymentRepository.findById(paymentId).orElseThrow().getStatus());
+        // past the lookback it is not asked about at all
+        assertNull(retrieved.get("pi_old"));
+    }
+
+    private Long cancelledOrderPayment(String intentId, String intentStatus, LocalDateTime createdAt) {
+        intents.put(intentId, intentStatus);
+
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setStatus(OrderStatus.CANCELLED);
+        order.setCreatedAt(createdAt);
+        Long orderId = orderRepository.save(order).getId();
+
+        Payment payment = new Payment();
+        payment.setOrderId(orderId);
+        payment.setProvider("STRIPE");
+        payment.setStatus(intentStatus);
+        payment.setStripePaymentIntentId(intentId);
+        payment.setCreatedAt(createdAt);
+        return paymentRepository.save(payment).getId();
+    }
+}
@@ -0,0 +1,110 @@
+package com.omnistore.payment;
+
+import com.omnistore.entity.Payment;
+import com.omnistore.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// A whole request through the web layer, on a one-connection pool: the provider call can only
+// borrow that connection if the request gave it back (no open-in-view EntityManager holding it).
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:gateway-connection;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "stripe.secret.key=sk_test_unused",
+        "inventory.hot.journal-path=target/gateway-connection-test.journal",
+        "cart.memory.snapshot-path="
+})
+@AutoConfigureMockMvc
+public class PaymentGatewayConnectionTest {
+
+    static final String PROVIDER = "POOL_PROBE";
+
+    // a provider that, mid-call, checks whether a pooled connection is free
+    static class PoolProbeGateway implements PaymentGateway {
+
+        private final DataSource dataSource;
+        final AtomicReference<String> connectionDuringCall = new AtomicReference<>();
+
+        PoolProbeGateway(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public String provider() {
+            return PROVIDER;
+        }
+
+        @Override
+        public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+            try (Connection connection = dataSource.getConnection()) {
+                connectionDuringCall.set("available");
+            } catch (Exception e) {
+                connectionDuringCall.set("held by the request: " + e.getMessage());
+            }
+            return new PaymentIntentResult(paymentIntentId, "processing", null);
+        }
+
+        @Override
+        public PaymentIntentResult cancelIntent(String paymentIntentId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        PoolProbeGateway poolProbeGateway(DataSource dataSource) {
+            return new PoolProbeGateway(dataSource);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PoolProbeGateway gateway;
+
+    @Test
+    @WithMockUser
+    void testConfirm_ConnectionReturnedToPoolDuringGatewayCall() throws Exception {
+        Payment payment = new Payment();
+        payment.setOrderId(1L);
+        payment.setAmount(19.99);
+        payment.setProvider(PROVIDER);
+        payment.setStatus("requires_payment_method");
+        payment.setStripePaymentIntentId("pi_probe");
+        payment.setCreatedAt(LocalDateTime.now());
+        paymentRepository.save(payment);
+
+        // the request reads the payment before calling the provider, and writes it after
+        mockMvc.perform(post("/api/payment/stripe/confirm/pi_probe"))
+                .andExpect(status().isOk());
+
+        assertEquals("available", gateway.connectionDuringCall.get());
+    }
+}
@@ -0,0 +1,157 @@
+package com.omnistore.payment;
+
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.exception.PaymentGatewayException;
+import com.omnistore.repository.PaymentRepository;
+import com.omnistore.services.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentReconciliationJobTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PaymentReconciliationJob job;
+
+    @BeforeEach
+    void setUp() {
+        // provider answers keyed by intent id; "pi_err" fails
+        Map<String, String> statuses = Map.of("pi_1", "succeeded", "pi_2", "canceled", "pi_3", "processing");
+        PaymentGateway stripe = new PaymentGateway() {
+            @Override
+            public String provider() {
+                return "STRIPE";
+            }
+
+            @Override
+            public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+                String status = statuses.get(paymentIntentId);
+                if (status == null) {
+                    throw new PaymentGatewayException("Stripe unavailable", true);
+                }
+                return new PaymentIntentResult(paymentIntentId, status, null);
+            }
+
+            @Override
+            public PaymentIntentResult cancelIntent(String paymentIntentId) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        PaymentGatewayRegistry gateways = new PaymentGatewayRegistry(List.of(stripe),
+                new MockEnvironment().withProperty("payment.gateway.timeout", "PT1S"));
+        job = new PaymentReconciliationJob(paymentRepository, orderService, gateways,
+                new TransactionTemplate(new NoOpTransactionManager()), meterRegistry,
+                true, 2, Duration.ofMinutes(5), Duration.ofDays(7), 4, 240_000, Duration.ofMinutes(15));
+    }
+
+    @Test
+    void testReconcile_RepairsDriftAcrossPages() {
+        when(paymentRepository.findReconciliationPage(eq(OrderStatus.CREATED), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(
+                        new ReconciliationCandidate(1L, 11L, "STRIPE", "pi_1", "requires_payment_method"),
+                        new ReconciliationCandidate(2L, 12L, "STRIPE", "pi_2", "requires_payment_method")));
+        when(paymentRepository.findReconciliationPage(eq(OrderStatus.CREATED), any(), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(
+                        new ReconciliationCandidate(3L, 13L, "STRIPE", "pi_3", "processing"),
+                        new ReconciliationCandidate(4L, 14L, "STRIPE", "pi_err", "requires_payment_method")));
+        when(paymentRepository.findReconciliationPage(eq(OrderStatus.CREATED), any(), eq(4L), any(Pageable.class)))
+                .thenReturn(List.of());
+        when(paymentRepository.findCancelledOrderPaymentPage(anyCollection(), any(), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of());
+        when(paymentRepository.updateUnsettledStatus(anyCollection(), any(), anyCollection())).thenReturn(1);
+        when(orderService.tryTransition(11L, OrderStatus.PAID)).thenReturn(true);
+        when(orderService.cancelUnpaid(12L)).thenReturn(true);
+
+        job.reconcile();
+
+        verify(paymentRepository).updateUnsettledStatus(eq(List.of(1L)), eq("succeeded"), anyCollection());
+        verify(paymentRepository).updateUnsettledStatus(eq(List.of(2L)), eq("FAILED"), anyCollection());
+        verify(orderService, never()).tryTransition(13L, OrderStatus.PAID);
+        verify(orderService, never()).cancelUnpaid(14L);
+
+        assertEquals(4.0, meterRegistry.counter("payments.reconciliation.scanned").count());
+        assertEquals(1.0, meterRegistry.counter("payments.reconciliation.repaired", "kind", "order_paid").count());
+        assertEquals(1.0, meterRegistry.counter("payments.reconciliation.repaired", "kind", "order_cancelled").count());
+        assertEquals(1.0, meterRegistry.counter("payments.reconciliation.provider.errors", "provider", "STRIPE").count());
+    }
+
+    // the reservation expired while the customer was paying: the charge landed on a cancelled order
+    @Test
+    void testReconcile_ReportsCancelledOrdersThatWerePaid() {
+        when(paymentRepository.findReconciliationPage(eq(OrderStatus.CREATED), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of());
+        when(paymentRepository.findCancelledOrderPaymentPage(anyCollection(), any(), any(), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(
+                        new ReconciliationCandidate(6L, 31L, "STRIPE", "pi_1", "requires_payment_method"),
+                        new ReconciliationCandidate(7L, 32L, "STRIPE", "pi_3", "processing")));
+        when(paymentRepository.updateUnsettledStatus(anyCollection(), any(), anyCollection())).thenReturn(1);
+
+        job.reconcile();
+
+        verify(paymentRepository).updateUnsettledStatus(eq(List.of(6L)), eq("succeeded"), anyCollection());
+        verify(orderService, never()).tryTransition(any(), any());
+        assertEquals(1.0, meterRegistry.get("payments.reconciliation.cancelled_paid").gauge().value());
+    }
+
+    @Test
+    void testReconcileChunk_SettledMockPaymentOnlyRepairsOrder() {
+        when(orderService.tryTransition(21L, OrderStatus.PAID)).thenReturn(true);
+
+        int repaired = job.reconcileChunk(List.of(new ReconciliationCandidate(5L, 21L, "MOCK_GATEWAY", null, "SUCCESS")));
+
+        assertEquals(1, repaired);
+        verify(paymentRepository, never()).updateUnsettledStatus(anyCollection(), any(), anyCollection());
+        assertEquals(1.0, meterRegistry.counter("payments.reconciliation.drift", "kind", "order_unpaid").count());
+    }
+
+    private static class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.omnistore.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.omnistore.entity.WebhookEvent;
+import com.omnistore.repository.WebhookEventRepository;
+import com.omnistore.services.PaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WebhookInboxProcessorTest {
+
+    @Mock
+    private WebhookEventRepository webhookEventRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WebhookInboxProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new WebhookInboxProcessor(webhookEventRepository, paymentService,
+                new TransactionTemplate(transactionManager), new ObjectMapper(),
+                1, 10, 10, 100, Duration.ofSeconds(30), Duration.ofDays(30));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.shutdown();
+    }
+
+    @Test
+    void testProcess_AppliesPaymentIntentStatus() {
+        WebhookEvent event = event("evt_1", "payment_intent.succeeded",
+                "{\"id\":\"evt_1\",\"data\":{\"object\":{\"id\":\"pi_1\",\"status\":\"succeeded\"}}}");
+        when(webhookEventRepository.lockPending("evt_1")).thenReturn(Optional.of(event));
+        when(paymentService.applyWebhookIntentStatus("pi_1", "succeeded")).thenReturn(true);
+
+        processor.process("evt_1");
+
+        verify(paymentService).applyWebhookIntentStatus("pi_1", "succeeded");
+        verify(webhookEventRepository).markProcessed(eq("evt_1"), any());
+    }
+
+    @Test
+    void testProcess_OtherEventTypesOnlyMarkedProcessed() {
+        WebhookEvent event = event("evt_2", "customer.created", "{\"data\":{\"object\":{\"id\":\"cus_1\"}}}");
+        when(webhookEventRepository.lockPending("evt_2")).thenReturn(Optional.of(event));
+
+        processor.process("evt_2");
+
+        verify(paymentService, never()).applyWebhookIntentStatus(anyString(), anyString());
+        verify(webhookEventRepository).markProcessed(eq("evt_2"), any());
+    }
+
+    @Test
+    void testProcess_FailureRecordedForRetry() {
+        WebhookEvent event = event("evt_3", "payment_intent.canceled",
+                "{\"data\":{\"object\":{\"id\":\"pi_3\",\"status\":\"canceled\"}}}");
+        when(webhookEventRepository.lockPending("evt_3")).thenReturn(Optional.of(event));
+        when(paymentService.applyWebhookIntentStatus("pi_3", "canceled")).thenThrow(new IllegalStateException("db down"));
+
+        processor.process("evt_3");
+
+        verify(webhookEventRepository).recordFailure("evt_3", "db down");
+        verify(webhookEventRepository, never()).markProcessed(any(), any());
+    }
+
+    @Test
+    void testProcess_AlreadyHandledIsSkipped() {
+        when(webhookEventRepository.lockPending("evt_4")).thenReturn(Optional.empty());
+
+        processor.process("evt_4");
+
+        verify(paymentService, never()).applyWebhookIntentStatus(anyString(), anyString());
+        verify(webhookEventRepository, never()).recordFailure(any(), any());
+    }
+
+    private WebhookEvent event(String id, String type, String payload) {
+        WebhookEvent event = new WebhookEvent();
+        event.setId(id);
+        event.setProvider(StripePaymentGateway.PROVIDER);
+        event.setEventType(type);
+        event.setPayload(payload);
+        event.setReceivedAt(LocalDateTime.now());
+        return event;
+    }
+}
@@ -0,0 +1,80 @@
+package com.omnistore.repository;
+
+import com.omnistore.entity.Cart;
+import com.omnistore.entity.CartItem;
+import com.omnistore.entity.Product;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CartRepositoryTest {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void testFindWithItemsByUserId_QueryCountIndependentOfCartSize() {
+        persistCart(1L, 1);
+        persistCart(2L, 30);
+
+        long smallCart = statementsToReadCart(1L, 1);
+        long largeCart = statementsToReadCart(2L, 30);
+
+        assertEquals(1, smallCart);
+        assertEquals(smallCart, largeCart);
+    }
+
+    private long statementsToReadCart(Long userId, int expectedLines) {
+        entityManager.clear();
+        statistics.clear();
+
+        Cart cart = cartRepository.findWithItemsByUserId(userId).orElseThrow();
+        double total = 0;
+        for (CartItem item : cart.getItems()) {
+            total += item.getProduct().getPrice() * item.getQuantity();
+        }
+
+        assertEquals(expectedLines, cart.getItems().size());
+        assertTrue(total > 0);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void persistCart(Long userId, int lines) {
+        Cart cart = new Cart();
+        cart.setUserId(userId);
+        entityManager.persist(cart);
+
+        for (int i = 0; i < lines; i++) {
+            Product product = new Product();
+            product.setName("Product " + userId + "-" + i);
+            product.setPrice(5.0 + i);
+            entityManager.persist(product);
+
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(2);
+            cart.getItems().add(item);
+            entityManager.persist(item);
+        }
+        entityManager.flush();
+    }
+}
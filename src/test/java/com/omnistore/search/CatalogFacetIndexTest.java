@@ -0,0 +1,73 @@
+package com.omnistore.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogFacetIndexTest {
+
+    private final CatalogFacetIndex index = new CatalogFacetIndex();
+
+    @BeforeEach
+    void setUp() {
+        // id, price, stock, rating sum / count, categories
+        index.upsert(new FacetSource(1L, 5.0, true, 3, 9L, 2), List.of(100L, 200L));
+        index.upsert(new FacetSource(2L, 30.0, true, 0, 5L, 1), List.of(100L, 200L));
+        index.upsert(new FacetSource(3L, 45.0, true, 8, 0L, 0), List.of(100L));
+        index.upsert(new FacetSource(4L, 600.0, true, 1, 3L, 1), List.of(100L, 200L));
+        index.upsert(new FacetSource(5L, 20.0, false, 9, 5L, 1), List.of(100L, 200L));
+    }
+
+    @Test
+    void testBrowse_FacetsIgnoreTheirOwnFilter() {
+        // in 100 and 200, in stock, under $50
+        BrowseResult result = index.browse(new BrowseQuery(List.of(100L, 200L), 0, 3, null, true, -1, 10));
+
+        assertEquals(List.of(1L), result.productIds());
+        assertEquals(1, result.totalHits());
+        // price counts keep the stock filter but not the price one: 1 and 4
+        assertArrayEquals(new int[]{1, 0, 0, 0, 0, 0, 1}, result.priceCounts());
+        // stock count keeps the price filter but not the stock one: 1 and 2
+        assertEquals(1, result.inStockCount());
+        assertArrayEquals(new int[]{0, 0, 0, 1, 0}, result.ratingCounts());
+
+        BrowseResult anyStock = index.browse(new BrowseQuery(List.of(100L, 200L), 0, 3, null, false, -1, 10));
+        assertEquals(List.of(1L, 2L), anyStock.productIds());
+    }
+
+    @Test
+    void testBrowse_PagesByIdAndSkipsInactive() {
+        BrowseResult first = index.browse(new BrowseQuery(List.of(100L), null, null, null, false, -1, 2));
+        assertEquals(List.of(1L, 2L), first.productIds());
+        assertTrue(first.hasMore());
+        assertEquals(4, first.totalHits());
+
+        BrowseResult second = index.browse(new BrowseQuery(List.of(100L), null, null, null, false, 2, 2));
+        assertEquals(List.of(3L, 4L), second.productIds());
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    void testUpdates_StockRatingAndCategories() {
+        index.updateStock(2L, 4);
+        index.replaceCategory(200L, List.of(2L, 3L, 5L));
+        index.upsert(new FacetSource(4L, 600.0, true, 1, 10L, 2), List.of());
+
+        BrowseResult result = index.browse(new BrowseQuery(List.of(200L), null, null, 5, true, -1, 10));
+        assertEquals(List.of(2L), result.productIds());
+        assertEquals(1, result.inStockCount());
+
+        // 4 lost its categories on the upsert but is still in the catalog, now at five stars
+        BrowseResult all = index.browse(new BrowseQuery(List.of(), null, null, 5, false, -1, 10));
+        assertEquals(List.of(2L, 4L), all.productIds());
+        assertArrayEquals(new int[]{0, 0, 0, 1, 2}, all.ratingCounts());
+
+        index.remove(2L);
+        assertEquals(3, index.size());
+        assertEquals(List.of(3L), index.browse(new BrowseQuery(List.of(200L), null, null, null, false, -1, 10))
+                .productIds());
+    }
+}
@@ -0,0 +1,79 @@
+package com.omnistore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdBitmapTest {
+
+    @Test
+    void testAddRemove_SwitchesContainersBothWays() {
+        IdBitmap bitmap = new IdBitmap();
+        for (int id = 0; id <= IdBitmap.ARRAY_MAX; id++) {
+            bitmap.add(id * 2);
+        }
+        assertEquals(IdBitmap.ARRAY_MAX + 1, bitmap.cardinality());
+        assertTrue(bitmap.contains(IdBitmap.ARRAY_MAX * 2));
+        assertFalse(bitmap.contains(3));
+
+        for (int id = 0; id <= IdBitmap.ARRAY_MAX; id++) {
+            bitmap.remove(id * 2);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    void testIdsAfter_PagesAcrossChunks() {
+        IdBitmap bitmap = new IdBitmap();
+        int[] ids = {1, 65_535, 65_536, 200_000, 1 << 30};
+        for (int id : ids) {
+            bitmap.add(id);
+        }
+
+        assertArrayEquals(new int[]{1, 65_535}, bitmap.idsAfter(-1, 2));
+        assertArrayEquals(new int[]{65_536, 200_000}, bitmap.idsAfter(65_535, 2));
+        assertArrayEquals(new int[]{1 << 30}, bitmap.idsAfter(200_000, 2));
+        assertArrayEquals(new int[0], bitmap.idsAfter(1 << 30, 2));
+    }
+
+    // sparse, mixed and dense chunks against java.util.BitSet
+    @Test
+    void testSetOperations_MatchBitSet() {
+        Random random = new Random(5);
+        for (double density : new double[]{0.001, 0.05, 0.5}) {
+            BitSet expectedA = new BitSet();
+            BitSet expectedB = new BitSet();
+            IdBitmap a = new IdBitmap();
+            IdBitmap b = new IdBitmap();
+            for (int id = 0; id < 300_000; id++) {
+                if (random.nextDouble() < density) {
+                    expectedA.set(id);
+                    a.add(id);
+                }
+                if (random.nextDouble() < density * 2) {
+                    expectedB.set(id);
+                    b.add(id);
+                }
+            }
+            // knock some ids out again, so removals are covered too
+            for (int i = 0; i < 1000; i++) {
+                int id = random.nextInt(300_000);
+                expectedA.clear(id);
+                a.remove(id);
+            }
+
+            BitSet and = (BitSet) expectedA.clone();
+            and.and(expectedB);
+            BitSet or = (BitSet) expectedA.clone();
+            or.or(expectedB);
+
+            assertEquals(expectedA.cardinality(), a.cardinality());
+            assertEquals(and.cardinality(), IdBitmap.andCardinality(a, b));
+            assertArrayEquals(and.stream().toArray(), IdBitmap.and(a, b).idsAfter(-1, Integer.MAX_VALUE));
+            assertArrayEquals(or.stream().toArray(), IdBitmap.or(a, b).idsAfter(-1, Integer.MAX_VALUE));
+        }
+    }
+}
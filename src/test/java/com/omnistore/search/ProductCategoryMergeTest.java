@@ -0,0 +1,30 @@
+package com.omnistore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductCategoryMergeTest {
+
+    @Test
+    void testForEach_GivesEachProductItsOwnRows() {
+        Map<Long, List<Long>> merged = new LinkedHashMap<>();
+
+        // product 2 has no rows, product 4 is not in the product stream
+        ProductCategoryMerge.forEach(Stream.of(1L, 2L, 3L, 5L), id -> id,
+                Stream.of(row(1, 10), row(1, 11), row(3, 10), row(4, 12), row(5, 13)),
+                (id, categories) -> merged.put(id, categories.stream().map(CategoryAssignment::categoryId).toList()));
+
+        assertEquals(Map.of(1L, List.of(10L, 11L), 2L, List.of(), 3L, List.of(10L), 5L, List.of(13L)), merged);
+        assertEquals(List.of(1L, 2L, 3L, 5L), List.copyOf(merged.keySet()));
+    }
+
+    private static CategoryAssignment row(long productId, long categoryId) {
+        return new CategoryAssignment(productId, categoryId, "c" + categoryId);
+    }
+}
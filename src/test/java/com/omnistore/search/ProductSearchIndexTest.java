@@ -0,0 +1,87 @@
+package com.omnistore.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex();
+        index.upsert(new SearchDocument(1L, "Wireless Headphones", "Noise cancelling over-ear", 199.0, true,
+                List.of(10L), List.of("Audio")));
+        index.upsert(new SearchDocument(2L, "Wired Headset", "Wireless charging case not included", 49.0, true,
+                List.of(10L, 11L), List.of("Audio", "Gaming")));
+        index.upsert(new SearchDocument(3L, "Wireless Mouse", "Ergonomic", 25.0, false,
+                List.of(12L), List.of("Peripherals")));
+        index.upsert(new SearchDocument(4L, "Café crème mug", null, null, true, List.of(), List.of()));
+    }
+
+    @Test
+    void testSearch_RanksNameMatchesAboveDescriptionMatches() {
+        SearchResult result = index.search(query("wireless"));
+
+        assertEquals(3, result.totalHits());
+        assertEquals(2L, result.productIds().get(2)); // only mentioned in the description
+    }
+
+    @Test
+    void testSearch_LastTermMatchesAsPrefix() {
+        // 2 has "wireless" only in its description, so it ranks second
+        assertEquals(List.of(1L, 2L), index.search(query("wireless head")).productIds());
+        assertEquals(List.of(1L, 2L), sorted(index.search(query("head")).productIds()));
+        assertEquals(List.of(4L), index.search(query("CAFE")).productIds());
+        assertEquals(0, index.search(query("headphones wireless mouse")).totalHits());
+    }
+
+    @Test
+    void testSearch_Filters() {
+        assertEquals(List.of(1L, 2L), sorted(index.search(
+                new SearchQuery("wireless", null, null, null, true, 0, 10)).productIds()));
+        assertEquals(List.of(3L), index.search(
+                new SearchQuery("wireless", null, null, null, false, 0, 10)).productIds());
+        assertEquals(List.of(2L), index.search(
+                new SearchQuery("wireless", 10L, null, 100.0, null, 0, 10)).productIds());
+        assertEquals(List.of(3L), index.search(
+                new SearchQuery("peripherals", null, 20.0, 30.0, null, 0, 10)).productIds());
+        // no price never passes a price filter
+        assertEquals(0, index.search(new SearchQuery("mug", null, 0.0, null, null, 0, 10)).totalHits());
+    }
+
+    @Test
+    void testUpsert_ReplacesTheOldDocument() {
+        index.upsert(new SearchDocument(3L, "Bluetooth Trackball", null, 25.0, true, List.of(), List.of()));
+
+        assertFalse(index.search(query("wireless")).productIds().contains(3L));
+        assertEquals(List.of(3L), index.search(query("trackball")).productIds());
+        assertEquals(4, index.size());
+        assertEquals(0.2, index.deletedRatio(), 1e-9);
+
+        index.remove(3L);
+        assertEquals(0, index.search(query("trackball")).totalHits());
+        assertEquals(List.of(1L, 2L), sorted(index.productsInCategory(10L)));
+    }
+
+    @Test
+    void testSearch_Pages() {
+        SearchResult all = index.search(query("wi"));
+        SearchResult second = index.search(new SearchQuery("wi", null, null, null, null, 1, 1));
+
+        assertEquals(3, second.totalHits());
+        assertEquals(List.of(all.productIds().get(1)), second.productIds());
+    }
+
+    private static SearchQuery query(String text) {
+        return new SearchQuery(text, null, null, null, null, 0, 10);
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,107 @@
+package com.omnistore.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestionTrieTest {
+
+    private final SuggestionTrie trie = new SuggestionTrie.Builder()
+            .add(SuggestionTrie.Kind.PRODUCT, 1L, "Wireless Headphones", 50)
+            .add(SuggestionTrie.Kind.PRODUCT, 2L, "Wireless Mouse", 80)
+            .add(SuggestionTrie.Kind.PRODUCT, 3L, "USB-C Cable", 10)
+            .add(SuggestionTrie.Kind.PRODUCT, 4L, "USB Hub", 20)
+            .add(SuggestionTrie.Kind.PRODUCT, 5L, "Café au lait mug", 5)
+            .add(SuggestionTrie.Kind.PRODUCT, 6L, "The Headphone Stand", 1)
+            .add(SuggestionTrie.Kind.CATEGORY, 10L, "Audio", 100)
+            .build();
+
+    @Test
+    void testSuggest_MostPopularFirst() {
+        assertEquals(List.of(2L, 1L), ids(trie.suggest("wire", 10)));
+        assertEquals(List.of(2L), ids(trie.suggest("wire", 1)));
+        assertEquals(List.of(10L, 5L), ids(trie.suggest("au", 10)));
+        assertEquals(SuggestionTrie.Kind.CATEGORY, trie.suggest("audio", 10).get(0).kind());
+    }
+
+    @Test
+    void testSuggest_MatchesWordStarts() {
+        // 6 starts with a stop word but is still found by its name and by its second word
+        assertEquals(List.of(1L, 6L), ids(trie.suggest("headph", 10)));
+        assertEquals(List.of(6L), ids(trie.suggest("the h", 10)));
+        assertEquals(List.of(1L), ids(trie.suggest("wireless headphones", 10)));
+        assertEquals(List.of(), ids(trie.suggest("eadph", 10)));
+    }
+
+    @Test
+    void testSuggest_NormalizesTheQuery() {
+        assertEquals(List.of(5L), ids(trie.suggest("  CAFE AU", 10)));
+        assertEquals("Café au lait mug", trie.suggest("cafe", 10).get(0).text());
+        assertEquals(List.of(4L, 3L), ids(trie.suggest("usb", 10)));
+        assertEquals(List.of(3L), ids(trie.suggest("usb c", 10)));
+        // a finished word is not a prefix any more
+        assertEquals(List.of(4L, 3L), ids(trie.suggest("usb ", 10)));
+        assertEquals(List.of(), ids(trie.suggest("usbc", 10)));
+        assertEquals(List.of(), ids(trie.suggest("?!", 10)));
+    }
+
+    @Test
+    void testSuggest_EmptyTrie() {
+        assertEquals(List.of(), SuggestionTrie.empty().suggest("a", 10));
+    }
+
+    // against a plain scan over random names, for the ranking and the node layout
+    @Test
+    void testSuggest_MatchesBruteForce() {
+        Random random = new Random(3);
+        String[] words = {"red", "read", "ready", "redo", "blue", "blues", "bl", "b", "green", "greenish"};
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
+        List<String> names = IntStream.range(0, 500)
+                .mapToObj(i -> IntStream.range(0, 1 + random.nextInt(4))
+                        .mapToObj(w -> words[random.nextInt(words.length)])
+                        .collect(Collectors.joining(" ")))
+                .toList();
+        for (int i = 0; i < names.size(); i++) {
+            builder.add(SuggestionTrie.Kind.PRODUCT, i, names.get(i), i % 37);
+        }
+        SuggestionTrie built = builder.build();
+
+        for (String prefix : new TreeSet<>(List.of("r", "re", "rea", "red", "red ", "b", "bl", "blue", "blues g", "gr", "x"))) {
+            List<Long> expected = IntStream.range(0, names.size())
+                    .filter(i -> keys(names.get(i)).stream().anyMatch(k -> k.startsWith(prefix)))
+                    .boxed()
+                    .sorted((a, b) -> a % 37 != b % 37 ? Integer.compare(b % 37, a % 37)
+                            : names.get(a).length() != names.get(b).length()
+                            ? Integer.compare(names.get(a).length(), names.get(b).length())
+                            : names.get(a).compareTo(names.get(b)))
+                    .limit(8)
+                    .map(i -> (long) i)
+                    .toList();
+            List<Long> actual = ids(built.suggest(prefix, 8));
+            // equal names may come back in either order, so compare the names
+            assertEquals(expected.stream().map(i -> names.get(i.intValue())).toList(),
+                    actual.stream().map(i -> names.get(i.intValue())).toList(), prefix);
+        }
+    }
+
+    private static List<String> keys(String name) {
+        String[] words = name.split(" ");
+        List<String> keys = new ArrayList<>();
+        keys.add(name);
+        for (int w = 1; w < words.length && keys.size() <= SuggestionTrie.MAX_WORD_KEYS; w++) {
+            keys.add(String.join(" ", List.of(words).subList(w, words.length)));
+        }
+        return keys;
+    }
+
+    private static List<Long> ids(List<SuggestionTrie.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestionTrie.Suggestion::id).toList();
+    }
+}
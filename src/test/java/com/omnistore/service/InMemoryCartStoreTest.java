@@ -0,0 +1,79 @@
+package com.omnistore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.omnistore.services.CartSnapshot;
+import com.omnistore.services.InMemoryCartStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryCartStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testUpdate_MergesLinesPerUser() {
+        InMemoryCartStore store = new InMemoryCartStore(4, Duration.ofHours(1), "", objectMapper);
+
+        store.update(1L, lines -> lines.merge(10L, 2, Integer::sum));
+        CartSnapshot cart = store.update(1L, lines -> lines.merge(10L, 3, Integer::sum));
+
+        assertEquals(Map.of(10L, 5), cart.lines());
+        assertTrue(store.find(2L).isEmpty());
+
+        store.delete(1L);
+        assertTrue(store.find(1L).isEmpty());
+    }
+
+    // a checkout removes what it ordered, not lines added while it ran
+    @Test
+    void testRemoveLines_KeepsLinesAddedSinceTheOrder() {
+        InMemoryCartStore store = new InMemoryCartStore(4, Duration.ofHours(1), "", objectMapper);
+        store.update(1L, lines -> {
+            lines.put(10L, 2);
+            lines.put(11L, 1);
+        });
+        Map<Long, Integer> ordered = store.find(1L).orElseThrow().lines();
+
+        store.update(1L, lines -> {
+            lines.merge(10L, 3, Integer::sum);
+            lines.put(12L, 4);
+        });
+        store.removeLines(1L, ordered);
+
+        assertEquals(Map.of(10L, 3, 12L, 4), store.find(1L).orElseThrow().lines());
+
+        store.removeLines(1L, Map.of(10L, 3, 12L, 4));
+        assertTrue(store.find(1L).isEmpty());
+    }
+
+    @Test
+    void testFind_ExpiredCartIsGone() {
+        InMemoryCartStore store = new InMemoryCartStore(4, Duration.ZERO, "", objectMapper);
+
+        store.update(1L, lines -> lines.put(10L, 1));
+
+        assertTrue(store.find(1L).isEmpty());
+    }
+
+    @Test
+    void testSnapshot_SurvivesRestart(@TempDir Path dir) {
+        String path = dir.resolve("carts.json").toString();
+        InMemoryCartStore store = new InMemoryCartStore(4, Duration.ofHours(1), path, objectMapper);
+        store.update(7L, lines -> {
+            lines.put(10L, 1);
+            lines.put(11L, 4);
+        });
+        store.writeSnapshot();
+
+        InMemoryCartStore restarted = new InMemoryCartStore(4, Duration.ofHours(1), path, objectMapper);
+        restarted.loadSnapshot();
+
+        assertEquals(Map.of(10L, 1, 11L, 4), restarted.find(7L).orElseThrow().lines());
+    }
+}
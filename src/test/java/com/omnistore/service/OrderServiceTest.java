@@ -0,0 +1,83 @@
+package com.omnistore.service;
+
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.events.OrderEventType;
+import com.omnistore.events.OutboxService;
+import com.omnistore.exception.BadRequestException;
+import com.omnistore.exception.ResourceNotFoundException;
+import com.omnistore.repository.OrderRepository;
+import com.omnistore.services.OrderService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    @Test
+    void testTransition_Success() {
+        when(orderRepository.transition(1L, EnumSet.of(OrderStatus.PAID), OrderStatus.SHIPPED)).thenReturn(1);
+
+        orderService.transition(1L, OrderStatus.SHIPPED);
+
+        verify(outboxService).record(OrderEventType.ORDER_SHIPPED, 1L);
+    }
+
+    @Test
+    void testTransition_IllegalMove() {
+        when(orderRepository.transition(1L, EnumSet.of(OrderStatus.SHIPPED), OrderStatus.DELIVERED)).thenReturn(0);
+        when(orderRepository.findStatusById(1L)).thenReturn(OrderStatus.CANCELLED);
+
+        BadRequestException ex = assertThrows(BadRequestException.class,
+                () -> orderService.transition(1L, OrderStatus.DELIVERED));
+
+        assertEquals("Order cannot move to DELIVERED. Current status: CANCELLED", ex.getMessage());
+        verify(outboxService, never()).record(any(), any());
+    }
+
+    @Test
+    void testTransition_OrderNotFound() {
+        when(orderRepository.transition(1L, EnumSet.of(OrderStatus.CREATED, OrderStatus.PAID), OrderStatus.CANCELLED))
+                .thenReturn(0);
+        when(orderRepository.findStatusById(1L)).thenReturn(null);
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.transition(1L, OrderStatus.CANCELLED));
+    }
+
+    @Test
+    void testCancelUnpaid_OnlyFromCreated() {
+        when(orderRepository.transition(1L, OrderStatus.CREATED, OrderStatus.CANCELLED)).thenCallRealMethod();
+        when(orderRepository.transition(1L, EnumSet.of(OrderStatus.CREATED), OrderStatus.CANCELLED)).thenReturn(1);
+
+        assertTrue(orderService.cancelUnpaid(1L));
+
+        verify(outboxService).record(OrderEventType.ORDER_CANCELLED, 1L);
+    }
+
+    @Test
+    void testCanTransitionTo() {
+        assertTrue(OrderStatus.CREATED.canTransitionTo(OrderStatus.PAID));
+        assertTrue(OrderStatus.PAID.canTransitionTo(OrderStatus.CANCELLED));
+        assertFalse(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.CANCELLED));
+        assertFalse(OrderStatus.CANCELLED.canTransitionTo(OrderStatus.PAID));
+    }
+}
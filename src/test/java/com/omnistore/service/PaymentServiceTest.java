@@ -0,0 +1,269 @@
+package com.omnistore.service;
+
+import com.omnistore.entity.Order;
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.entity.Payment;
+import com.omnistore.exception.PaymentGatewayException;
+import com.omnistore.payment.CircuitBreaker;
+import com.omnistore.payment.MockPaymentGateway;
+import com.omnistore.payment.PaymentGateway;
+import com.omnistore.payment.PaymentGatewayRegistry;
+import com.omnistore.payment.PaymentIntentResult;
+import com.omnistore.payment.StripePaymentGateway;
+import com.omnistore.repository.OrderRepository;
+import com.omnistore.repository.PaymentRepository;
+import com.omnistore.services.OrderService;
+import com.omnistore.services.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentServiceTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    private final StubStripeGateway stripe = new StubStripeGateway();
+    private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+
+    private PaymentGatewayRegistry gateways;
+    private PaymentService paymentService;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("payment.gateway.timeout", "PT0.5S")
+                .withProperty("payment.gateway.stripe.circuit.failure-threshold", "2");
+        MockPaymentGateway mock = new MockPaymentGateway(42, Duration.ZERO, Duration.ZERO, 0.1, 0.0);
+        gateways = new PaymentGatewayRegistry(List.of(stripe, mock), environment);
+        paymentService = new PaymentService(paymentRepository, orderRepository, orderService,
+                gateways, new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    void testCreateStripePaymentIntent_ProviderCalledOutsideTransaction() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setTotalAmount(12.5);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(paymentRepository.findByOrderIdAndProvider(1L, "STRIPE")).thenReturn(Optional.empty());
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Payment payment = paymentService.createStripePaymentIntent(1L);
+
+        assertEquals("pi_1", payment.getStripePaymentIntentId());
+        assertEquals("requires_payment_method", payment.getStatus());
+        assertEquals(1250L, stripe.lastAmount);
+        assertFalse(stripe.calledInTransaction);
+        assertEquals(1, transactionManager.commits);
+    }
+
+    @Test
+    void testCreateStripePaymentIntent_AmountRoundedToCents() {
+        Order order = new Order();
+        order.setId(1L);
+        order.setTotalAmount(19.99);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(paymentRepository.findByOrderIdAndProvider(1L, "STRIPE")).thenReturn(Optional.empty());
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        paymentService.createStripePaymentIntent(1L);
+
+        assertEquals(1999L, stripe.lastAmount);
+    }
+
+    @Test
+    void testConfirmStripePayment_SucceededMarksOrderPaid() {
+        Payment stored = new Payment();
+        stored.setOrderId(1L);
+        stored.setProvider(StripePaymentGateway.PROVIDER);
+        stored.setStripePaymentIntentId("pi_1");
+        when(paymentRepository.findByStripePaymentIntentId("pi_1")).thenReturn(Optional.of(stored));
+        when(orderService.tryTransition(1L, OrderStatus.PAID)).thenReturn(true);
+        stripe.status = "succeeded";
+
+        Payment payment = paymentService.confirmStripePayment("pi_1");
+
+        assertEquals("succeeded", payment.getStatus());
+        assertFalse(stripe.calledInTransaction);
+        verify(orderService).tryTransition(1L, OrderStatus.PAID);
+    }
+
+    @Test
+    void testWebhook_LateCanceledAfterSucceededIgnored() {
+        Payment stored = new Payment();
+        stored.setOrderId(1L);
+        stored.setProvider(StripePaymentGateway.PROVIDER);
+        stored.setStripePaymentIntentId("pi_1");
+        stored.setStatus("succeeded");
+        when(paymentRepository.findByStripePaymentIntentId("pi_1")).thenReturn(Optional.of(stored));
+
+        assertTrue(paymentService.applyWebhookIntentStatus("pi_1", "canceled"));
+        assertTrue(paymentService.applyWebhookIntentStatus("pi_1", "processing"));
+
+        assertEquals("succeeded", stored.getStatus());
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verify(orderService, never()).cancelUnpaid(any());
+    }
+
+    @Test
+    void testWebhook_SucceededRedeliveryReapplied() {
+        Payment stored = new Payment();
+        stored.setOrderId(1L);
+        stored.setProvider(StripePaymentGateway.PROVIDER);
+        stored.setStripePaymentIntentId("pi_1");
+        stored.setStatus("succeeded");
+        when(paymentRepository.findByStripePaymentIntentId("pi_1")).thenReturn(Optional.of(stored));
+
+        assertTrue(paymentService.applyWebhookIntentStatus("pi_1", "succeeded"));
+
+        // already paid: the order transition is a no-op
+        verify(orderService).tryTransition(1L, OrderStatus.PAID);
+    }
+
+    @Test
+    void testProviderFailures_OpenCircuit() {
+        Payment stored = new Payment();
+        stored.setOrderId(1L);
+        stored.setProvider(StripePaymentGateway.PROVIDER);
+        when(paymentRepository.findByStripePaymentIntentId("pi_1")).thenReturn(Optional.of(stored));
+        stripe.failing = true;
+
+        assertThrows(PaymentGatewayException.class, () -> paymentService.confirmStripePayment("pi_1"));
+        assertThrows(PaymentGatewayException.class, () -> paymentService.confirmStripePayment("pi_1"));
+        assertEquals(CircuitBreaker.State.OPEN, gateways.getCircuitState(StripePaymentGateway.PROVIDER));
+        assertEquals(CircuitBreaker.State.CLOSED, gateways.getCircuitState(MockPaymentGateway.PROVIDER));
+
+        // refused without reaching the provider
+        PaymentGatewayException refused = assertThrows(PaymentGatewayException.class,
+                () -> paymentService.confirmStripePayment("pi_1"));
+        assertTrue(refused.isRetryable());
+        assertEquals(2, stripe.calls);
+    }
+
+    @Test
+    void testSlowProvider_TimesOut() {
+        Payment stored = new Payment();
+        stored.setOrderId(1L);
+        stored.setProvider(StripePaymentGateway.PROVIDER);
+        when(paymentRepository.findByStripePaymentIntentId("pi_1")).thenReturn(Optional.of(stored));
+        stripe.delayMillis = 5_000;
+
+        PaymentGatewayException ex = assertThrows(PaymentGatewayException.class,
+                () -> paymentService.confirmStripePayment("pi_1"));
+
+        assertTrue(ex.getMessage().contains("timed out"));
+        assertEquals(0, transactionManager.commits);
+    }
+
+    @Test
+    void testMockGateway_Deterministic() {
+        MockPaymentGateway first = new MockPaymentGateway(7, Duration.ZERO, Duration.ZERO, 0.5, 0.0);
+        MockPaymentGateway second = new MockPaymentGateway(7, Duration.ZERO, Duration.ZERO, 0.5, 0.0);
+
+        int declined = 0;
+        for (long orderId = 1; orderId <= 1000; orderId++) {
+            PaymentIntentResult a = first.createIntent(orderId, 100, "usd");
+            assertEquals(a, second.createIntent(orderId, 100, "usd"));
+            assertEquals(a, first.retrieveIntent(a.id()));
+            if ("canceled".equals(a.status())) {
+                declined++;
+            }
+        }
+        assertTrue(declined > 400 && declined < 600, "declined " + declined);
+    }
+
+    // Local stand-in for the Stripe API
+    private class StubStripeGateway implements PaymentGateway {
+        volatile String status = "requires_payment_method";
+        volatile boolean failing;
+        volatile long delayMillis;
+        volatile long lastAmount;
+        volatile int calls;
+        volatile boolean calledInTransaction;
+
+        @Override
+        public String provider() {
+            return StripePaymentGateway.PROVIDER;
+        }
+
+        @Override
+        public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+            lastAmount = amountInCents;
+            return respond("pi_" + orderId);
+        }
+
+        @Override
+        public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+            return respond(paymentIntentId);
+        }
+
+        @Override
+        public PaymentIntentResult cancelIntent(String paymentIntentId) {
+            throw new UnsupportedOperationException();
+        }
+
+        private PaymentIntentResult respond(String id) {
+            calls++;
+            calledInTransaction |= transactionManager.active;
+            if (failing) {
+                throw new PaymentGatewayException("connection refused", true);
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    throw new PaymentGatewayException("interrupted", true);
+                }
+            }
+            return new PaymentIntentResult(id, status, id + "_secret");
+        }
+    }
+
+    private static class RecordingTransactionManager implements PlatformTransactionManager {
+        volatile boolean active;
+        int commits;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            active = true;
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            active = false;
+            commits++;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            active = false;
+        }
+    }
+}
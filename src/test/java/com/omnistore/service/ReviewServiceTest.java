@@ -0,0 +1,118 @@
+package com.omnistore.service;
+
+import com.omnistore.dto.CursorPageDto;
+import com.omnistore.dto.ProductResponseDto;
+import com.omnistore.dto.ReviewResponseDto;
+import com.omnistore.entity.Product;
+import com.omnistore.entity.ProductReview;
+import com.omnistore.entity.User;
+import com.omnistore.exception.BadRequestException;
+import com.omnistore.repository.ProductRepository;
+import com.omnistore.repository.ProductReviewRepository;
+import com.omnistore.repository.UserRepository;
+import com.omnistore.services.ProductService;
+import com.omnistore.services.ReviewService;
+import com.omnistore.util.CursorCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReviewServiceTest {
+
+    @Mock
+    private ProductReviewRepository reviewRepository;
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ReviewService reviewService;
+
+    @Test
+    void testAddReview_IncrementsAggregates() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(new User()));
+        when(productService.findProductById(10L)).thenReturn(new Product());
+        when(reviewRepository.save(any(ProductReview.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        reviewService.addReview(1L, 10L, 4, "good");
+
+        verify(productRepository).incrementRating(10L, 4);
+    }
+
+    @Test
+    void testAddReview_InvalidRatingLeavesAggregates() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(new User()));
+        when(productService.findProductById(10L)).thenReturn(new Product());
+
+        assertThrows(BadRequestException.class, () -> reviewService.addReview(1L, 10L, 6, null));
+
+        verify(productRepository, never()).incrementRating(anyLong(), anyInt());
+    }
+
+    @Test
+    void testProductResponse_AverageFromAggregates() {
+        ProductResponseDto dto = new ProductResponseDto(10L, "p", null, 1.0, true, 7L, 2, 0, 0, 1, 1, 0);
+        assertEquals(3.5, dto.getAverageRating());
+        assertArrayEquals(new int[] {0, 0, 1, 1, 0}, dto.getRatingHistogram());
+
+        ProductResponseDto unrated = new ProductResponseDto(11L, "q", null, 1.0, true, 0L, 0, 0, 0, 0, 0, 0);
+        assertNull(unrated.getAverageRating());
+    }
+
+    @Test
+    void testGetReviewsByProduct_TopRatedCursorRoundTrip() {
+        LocalDateTime now = LocalDateTime.now();
+        when(reviewRepository.findTopRatedPage(eq(10L), any())).thenReturn(List.of(
+                new ReviewResponseDto(9L, 1L, "a@x", 5, null, now),
+                new ReviewResponseDto(4L, 2L, "b@x", 4, null, now),
+                new ReviewResponseDto(7L, 3L, "c@x", 4, null, now)));
+
+        CursorPageDto<ReviewResponseDto> first = reviewService.getReviewsByProduct(10L, "rating", null, 2);
+
+        assertEquals(2, first.getItems().size());
+        assertTrue(first.isHasMore());
+
+        when(reviewRepository.findTopRatedPageAfter(eq(10L), eq(4), eq(4L), any())).thenReturn(List.of(
+                new ReviewResponseDto(7L, 3L, "c@x", 4, null, now)));
+
+        CursorPageDto<ReviewResponseDto> second = reviewService.getReviewsByProduct(10L, "rating", first.getNextCursor(), 2);
+
+        assertEquals(List.of(7L), second.getItems().stream().map(ReviewResponseDto::getId).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void testGetReviewsByProduct_RejectsUnknownSortAndForeignCursor() {
+        assertThrows(BadRequestException.class, () -> reviewService.getReviewsByProduct(10L, "helpful", null, 20));
+
+        // a rating cursor handed to the newest listing
+        String ratingCursor = CursorCodec.encode(4, 4L);
+        assertThrows(BadRequestException.class, () -> reviewService.getReviewsByProduct(10L, "newest", ratingCursor, 20));
+    }
+}
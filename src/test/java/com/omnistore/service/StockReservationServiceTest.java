@@ -0,0 +1,286 @@
+package com.omnistore.service;
+
+import com.omnistore.entity.Order;
+import com.omnistore.entity.OrderStatus;
+import com.omnistore.entity.Payment;
+import com.omnistore.entity.Product;
+import com.omnistore.events.OrderEventType;
+import com.omnistore.events.OutboxService;
+import com.omnistore.exception.BadRequestException;
+import com.omnistore.payment.PaymentGateway;
+import com.omnistore.payment.PaymentGatewayRegistry;
+import com.omnistore.payment.PaymentIntentResult;
+import com.omnistore.repository.OrderRepository;
+import com.omnistore.repository.PaymentRepository;
+import com.omnistore.repository.ProductRepository;
+import com.omnistore.repository.StockReservationRepository;
+import com.omnistore.services.InventoryService;
+import com.omnistore.services.StockReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// against the real database: every checkout commits on its own, like concurrent requests do
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class StockReservationServiceTest {
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        InventoryService inventoryService() {
+            // no hot SKUs here, every line goes to the products row
+            InventoryService inventoryService = mock(InventoryService.class);
+            when(inventoryService.tryReserveHot(anyLong(), anyInt())).thenReturn(InventoryService.HotReservation.NOT_HOT);
+            return inventoryService;
+        }
+
+        @Bean
+        OutboxService outboxService() {
+            return mock(OutboxService.class);
+        }
+
+        // provider answers keyed by intent id
+        @Bean
+        PaymentGatewayRegistry paymentGatewayRegistry() {
+            Map<String, String> statuses = Map.of("pi_processing", "processing", "pi_abandoned", "requires_payment_method");
+            PaymentGateway stripe = new PaymentGateway() {
+                @Override
+                public String provider() {
+                    return "STRIPE";
+                }
+
+                @Override
+                public PaymentIntentResult createIntent(Long orderId, long amountInCents, String currency) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public PaymentIntentResult retrieveIntent(String paymentIntentId) {
+                    return new PaymentIntentResult(paymentIntentId, statuses.get(paymentIntentId), null);
+                }
+
+                @Override
+                public PaymentIntentResult cancelIntent(String paymentIntentId) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+            return new PaymentGatewayRegistry(List.of(stripe), new MockEnvironment());
+        }
+
+        @Bean
+        StockReservationService stockReservationService(StockReservationRepository reservationRepository,
+                                                        OrderRepository orderRepository,
+                                                        PaymentRepository paymentRepository,
+                                                        PaymentGatewayRegistry gateways,
+                                                        InventoryService inventoryService,
+                                                        OutboxService outboxService,
+                                                        JdbcTemplate jdbcTemplate,
+                                                        TransactionTemplate transactionTemplate,
+                                                        ApplicationEventPublisher eventPublisher) {
+            return new StockReservationService(reservationRepository, orderRepository, paymentRepository, gateways,
+                    inventoryService, outboxService,
+                    jdbcTemplate, transactionTemplate, eventPublisher, Duration.ofMinutes(15));
+        }
+    }
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void testReserve_ConcurrentBuyersNeverOversell() throws Exception {
+        int stock = 5;
+        int buyers = 40;
+        Long productId = product(stock);
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+        try {
+            for (int i = 0; i < buyers; i++) {
+                long orderId = 1_000 + i;
+                attempts.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        reserve(orderId, productId, 1);
+                        return true;
+                    } catch (BadRequestException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            for (Future<Boolean> attempt : attempts) {
+                if (attempt.get()) {
+                    reserved++;
+                }
+            }
+
+            assertEquals(stock, reserved);
+            assertEquals(0, stockOf(productId));
+            assertEquals(stock, reservationsOf(productId, "RESERVED"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReserve_ProductWithoutStockLevelIsNotReportedAsShort() {
+        Long unstocked = product(0);
+        Long soldOut = product(0);
+        // as left by rows created before the stock default
+        jdbcTemplate.update("update products set stock = null where id = ?", unstocked);
+
+        BadRequestException missing = assertThrows(BadRequestException.class, () -> reserve(3_000L, unstocked, 1));
+        BadRequestException shortage = assertThrows(BadRequestException.class, () -> reserve(3_001L, soldOut, 1));
+
+        assertEquals("No stock level set for product ID: " + unstocked, missing.getMessage());
+        assertEquals("Insufficient stock for product ID: " + soldOut, shortage.getMessage());
+    }
+
+    @Test
+    void testRelease_RestoresStockOnce() {
+        Long productId = product(10);
+        reserve(2_000L, productId, 3);
+        assertEquals(7, stockOf(productId));
+
+        stockReservationService.release(2_000L);
+        stockReservationService.release(2_000L);
+
+        assertEquals(10, stockOf(productId));
+        assertEquals(1, reservationsOf(productId, "RELEASED"));
+    }
+
+    @Test
+    void testExpireStaleReservations_CancelsUnpaidOrderAndRestoresStockOnce() {
+        Long productId = product(10);
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setStatus(OrderStatus.CREATED);
+        order.setCreatedAt(LocalDateTime.now());
+        Long orderId = orderRepository.save(order).getId();
+
+        reserve(orderId, productId, 4);
+        jdbcTemplate.update("update stock_reservations set expires_at = ? where order_id = ?",
+                LocalDateTime.now().minusMinutes(1), orderId);
+
+        stockReservationService.expireStaleReservations();
+        stockReservationService.expireStaleReservations();
+
+        assertEquals(10, stockOf(productId));
+        assertEquals(1, reservationsOf(productId, "RELEASED"));
+        assertEquals(OrderStatus.CANCELLED, orderRepository.findStatusById(orderId));
+        // the mock sits behind OutboxService's MANDATORY transaction proxy
+        OutboxService outbox = AopTestUtils.getTargetObject(outboxService);
+        verify(outbox, times(1)).record(OrderEventType.ORDER_CANCELLED, orderId);
+    }
+
+    @Test
+    void testExpireStaleReservations_HoldsOrderWhosePaymentIsInFlight() {
+        Long productId = product(10);
+        Long processing = expiredOrder(productId, "pi_processing");
+        Long abandoned = expiredOrder(productId, "pi_abandoned");
+
+        stockReservationService.expireStaleReservations();
+
+        // the charge may still land: stock stays held for another TTL
+        assertEquals(OrderStatus.CREATED, orderRepository.findStatusById(processing));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from stock_reservations where order_id = ? and status = 'RESERVED' and expires_at > ?",
+                Integer.class, processing, LocalDateTime.now()));
+        assertEquals(OrderStatus.CANCELLED, orderRepository.findStatusById(abandoned));
+        assertEquals(8, stockOf(productId));
+    }
+
+    private Long expiredOrder(Long productId, String intentId) {
+        Order order = new Order();
+        order.setUserId(1L);
+        order.setStatus(OrderStatus.CREATED);
+        order.setCreatedAt(LocalDateTime.now());
+        Long orderId = orderRepository.save(order).getId();
+
+        Payment payment = new Payment();
+        payment.setOrderId(orderId);
+        payment.setProvider("STRIPE");
+        payment.setStatus("requires_payment_method");
+        payment.setStripePaymentIntentId(intentId);
+        payment.setCreatedAt(LocalDateTime.now());
+        paymentRepository.save(payment);
+
+        reserve(orderId, productId, 2);
+        jdbcTemplate.update("update stock_reservations set expires_at = ? where order_id = ?",
+                LocalDateTime.now().minusMinutes(1), orderId);
+        return orderId;
+    }
+
+    private void reserve(Long orderId, Long productId, int quantity) {
+        transactionTemplate.executeWithoutResult(status ->
+                stockReservationService.reserve(orderId, Map.of(productId, quantity)));
+    }
+
+    private Long product(int stock) {
+        Product product = new Product();
+        product.setName("Last units");
+        product.setPrice(10.0);
+        product.setStock(stock);
+        return productRepository.save(product).getId();
+    }
+
+    private int stockOf(Long productId) {
+        return jdbcTemplate.queryForObject("select stock from products where id = ?", Integer.class, productId);
+    }
+
+    private int reservationsOf(Long productId, String status) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from stock_reservations where product_id = ? and status = ?",
+                Integer.class, productId, status);
+    }
+}
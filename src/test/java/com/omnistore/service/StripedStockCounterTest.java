@@ -0,0 +1,42 @@
+package com.omnistore.service;
+
+import com.omnistore.services.StripedStockCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedStockCounterTest {
+
+    @Test
+    void testTryReserve_NeverOversells() {
+        StripedStockCounter counter = new StripedStockCounter(4, 5);
+
+        assertTrue(counter.tryReserve(3));
+        // no single stripe holds 2, the slow path gathers them
+        assertTrue(counter.tryReserve(2));
+        assertFalse(counter.tryReserve(1));
+        assertEquals(0, counter.available());
+    }
+
+    // set() drains and re-spreads the stripes; a snapshot must never see the level half moved
+    @Test
+    void testAvailable_ConsistentWhileLevelIsReset() throws InterruptedException {
+        StripedStockCounter counter = new StripedStockCounter(32, 1000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = Thread.ofPlatform().start(() -> {
+            while (running.get()) {
+                counter.set(1000);
+            }
+        });
+        try {
+            for (int i = 0; i < 200_000; i++) {
+                assertEquals(1000, counter.available());
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}